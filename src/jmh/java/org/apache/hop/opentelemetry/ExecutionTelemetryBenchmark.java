@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.IExtensionData;
+import org.apache.hop.core.logging.ILoggingObject;
+import org.apache.hop.core.variables.IVariables;
+import org.apache.hop.core.variables.Variables;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measure the helpers called for every traced execution. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionTelemetryBenchmark {
+
+  private ExecutionTelemetry telemetry;
+  private ILoggingObject object;
+  private IVariables variables;
+  private Span span;
+
+  @Setup(Level.Trial)
+  public void setup(InMemoryTelemetry inMemoryTelemetry) {
+    telemetry = new ExecutionTelemetry();
+
+    span = GlobalOpenTelemetry.getTracer("Benchmark").spanBuilder("parent").startSpan();
+
+    Map<String, Object> extensionData = new HashMap<>();
+    extensionData.put(ExecutionTelemetry.SPAN, span);
+    ILoggingObject parent =
+        mock(
+            ILoggingObject.class,
+            withSettings().extraInterfaces(IExtensionData.class).stubOnly());
+    when(((IExtensionData) parent).getExtensionDataMap()).thenReturn(extensionData);
+
+    object = mock(ILoggingObject.class, withSettings().stubOnly());
+    when(object.getParent()).thenReturn(parent);
+
+    variables = new Variables();
+    variables.setVariable(ExecutionTelemetry.VARIABLE_HOP_PROJECT_NAME, "benchmark");
+    variables.setVariable(ExecutionTelemetry.VARIABLE_HOP_ENVIRONMENT_NAME, "dev");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    span.end();
+  }
+
+  @Benchmark
+  public Context getContext() {
+    return telemetry.getContext(object);
+  }
+
+  @Benchmark
+  public Span addProjectAndEnvironment() {
+    telemetry.addProjectAndEnvironment(variables, span);
+    return span;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Register an OpenTelemetry SDK exporting to memory as the global instance, so benchmarks measure
+ * the instrumentation and the SDK without any network export.
+ */
+@State(Scope.Benchmark)
+public class InMemoryTelemetry {
+
+  private InMemorySpanExporter spanExporter;
+  private InMemoryMetricReader metricReader;
+  private InMemoryLogRecordExporter logExporter;
+  private OpenTelemetrySdk sdk;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    spanExporter = InMemorySpanExporter.create();
+    metricReader = InMemoryMetricReader.create();
+    logExporter = InMemoryLogRecordExporter.create();
+
+    sdk =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(
+                SdkTracerProvider.builder()
+                    .setSampler(Sampler.parentBased(OpenTelemetryPlugin.getInstance().getSampler()))
+                    .addSpanProcessor(SimpleSpanProcessor.create(spanExporter))
+                    .build())
+            .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build())
+            .setLoggerProvider(
+                SdkLoggerProvider.builder()
+                    .addLogRecordProcessor(SimpleLogRecordProcessor.create(logExporter))
+                    .build())
+            .build();
+
+    GlobalOpenTelemetry.resetForTest();
+    GlobalOpenTelemetry.set(sdk);
+
+    // As the initialization of the plugin does once the SDK is registered
+    OpenTelemetryPlugin.getInstance().bind(sdk.getMeterProvider());
+    OpenTelemetryPlugin.getInstance().setReady(true);
+  }
+
+  /** Drop exported data so memory does not grow across iterations. */
+  @TearDown(Level.Iteration)
+  public void reset() {
+    spanExporter.reset();
+    logExporter.reset();
+    metricReader.collectAllMetrics();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    OpenTelemetryPlugin.getInstance().setReady(false);
+    sdk.close();
+    GlobalOpenTelemetry.resetForTest();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.Result;
+import org.apache.hop.core.exception.HopException;
+import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.variables.IVariables;
+import org.apache.hop.core.variables.Variables;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.config.PipelineRunConfiguration;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+import org.apache.hop.pipeline.engines.local.LocalPipelineEngine;
+import org.apache.hop.pipeline.execution.IExecutionFinishedListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of tracing a pipeline execution, from preparation to the finish listener, until
+ * its telemetry is recorded by the {@link TelemetryExecutor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineTelemetryBenchmark {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  @Param({"10", "100", "1000"})
+  public int components;
+
+  private final List<IExecutionFinishedListener<IPipelineEngine<PipelineMeta>>> finishedListeners =
+      new ArrayList<>();
+
+  private PipelineExecutionTelemetryExtensionPoint extensionPoint;
+  private LocalPipelineEngine pipeline;
+  private IVariables variables;
+  private ILogChannel log;
+  private TelemetryExecutor telemetryExecutor;
+
+  @Setup(Level.Trial)
+  public void setup(InMemoryTelemetry telemetry) {
+    extensionPoint = new PipelineExecutionTelemetryExtensionPoint();
+    telemetryExecutor = OpenTelemetryPlugin.getInstance().getTelemetryExecutor();
+
+    variables = new Variables();
+    variables.setVariable(ExecutionTelemetry.VARIABLE_HOP_PROJECT_NAME, "benchmark");
+    variables.setVariable(ExecutionTelemetry.VARIABLE_HOP_ENVIRONMENT_NAME, "dev");
+
+    log = mock(ILogChannel.class, withSettings().stubOnly());
+
+    PipelineMeta pipelineMeta = mock(PipelineMeta.class, withSettings().stubOnly());
+    when(pipelineMeta.getName()).thenReturn("benchmark");
+    when(pipelineMeta.getFilename()).thenReturn("/benchmark.hpl");
+
+    PipelineRunConfiguration runConfiguration =
+        mock(PipelineRunConfiguration.class, withSettings().stubOnly());
+    when(runConfiguration.getName()).thenReturn("local");
+
+    List<IEngineComponent> list = new ArrayList<>();
+    Date date = new Date();
+    for (int i = 0; i < components; i++) {
+      IEngineComponent component = mock(IEngineComponent.class, withSettings().stubOnly());
+      when(component.getName()).thenReturn("Transform " + i);
+      when(component.getLogChannelId()).thenReturn("transform-" + i);
+      when(component.getExecutionStartDate()).thenReturn(date);
+      when(component.getExecutionEndDate()).thenReturn(date);
+      list.add(component);
+    }
+
+    pipeline = mock(LocalPipelineEngine.class, withSettings().stubOnly());
+    when(pipeline.getPipelineMeta()).thenReturn(pipelineMeta);
+    when(pipeline.getPipelineRunConfiguration()).thenReturn(runConfiguration);
+    when(pipeline.getExtensionDataMap()).thenReturn(new HashMap<>());
+    when(pipeline.getLogChannelId()).thenReturn("pipeline");
+    when(pipeline.getContainerId()).thenReturn("container");
+    when(pipeline.getExecutionStartDate()).thenReturn(date);
+    when(pipeline.getExecutionEndDate()).thenReturn(date);
+    when(pipeline.getResult()).thenReturn(new Result());
+    when(pipeline.getComponents()).thenReturn(list);
+    doAnswer(invocation -> finishedListeners.add(invocation.getArgument(0)))
+        .when(pipeline)
+        .addExecutionFinishedListener(any());
+  }
+
+  @Benchmark
+  public void pipelineExecution() throws HopException {
+    finishedListeners.clear();
+    extensionPoint.callExtensionPoint(log, variables, pipeline);
+    for (IExecutionFinishedListener<IPipelineEngine<PipelineMeta>> listener : finishedListeners) {
+      listener.finished(pipeline);
+    }
+    // Include the spans and metrics recorded in the background
+    telemetryExecutor.awaitIdle(TIMEOUT);
+  }
+}
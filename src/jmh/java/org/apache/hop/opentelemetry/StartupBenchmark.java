@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the wall time of a hop-run executing a pipeline, in a separate process per measurement,
+ * so the class loading, the Hop environment initialization and the shutdown hook are included.
+ *
+ * <p>With the plugin <code>absent</code> the hop-run of the installation in <code>
+ * HOP_BENCHMARK_HOME_WITHOUT_PLUGIN</code> is used, the other cases use the installation with the
+ * plugin in <code>HOP_BENCHMARK_HOME</code>:
+ * <code>disabled</code> has no endpoint configured, and <code>enabled</code> exports to a local
+ * collector over http/protobuf. Each run uses an empty configuration folder, so the options of the
+ * installation do not interfere. The pipeline executed is given with <code>HOP_BENCHMARK_FILE
+ * </code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+  @Param({"absent", "disabled", "enabled"})
+  public String plugin;
+
+  private ProcessBuilder processBuilder;
+  private Path configFolder;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    String home =
+        getRequiredVariable(
+            "absent".equals(plugin) ? "HOP_BENCHMARK_HOME_WITHOUT_PLUGIN" : "HOP_BENCHMARK_HOME");
+    String file = getRequiredVariable("HOP_BENCHMARK_FILE");
+
+    configFolder = Files.createTempDirectory("hop-config");
+
+    processBuilder =
+        new ProcessBuilder(
+                List.of(
+                    new File(home, "hop-run.sh").getAbsolutePath(),
+                    "--file=" + file,
+                    "--runconfig=local"))
+            .directory(new File(home))
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+    Map<String, String> environment = processBuilder.environment();
+    environment.put("HOP_CONFIG_FOLDER", configFolder.toString());
+    environment.remove(OpenTelemetryPlugin.OTEL_EXPORTER_OTLP_ENDPOINT);
+    if ("enabled".equals(plugin)) {
+      environment.put(
+          "HOP_OPTIONS",
+          "-D"
+              + OpenTelemetryPlugin.OTEL_EXPORTER_OTLP_ENDPOINT
+              + "=http://localhost:4318 -D"
+              + OpenTelemetryPlugin.OTEL_EXPORTER_OTLP_PROTOCOL
+              + "=http/protobuf");
+    } else {
+      environment.remove("HOP_OPTIONS");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(configFolder)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public int hopRun() throws IOException, InterruptedException {
+    Process process = processBuilder.start();
+    int exitCode = process.waitFor();
+    if (exitCode != 0) {
+      throw new IllegalStateException("hop-run failed with exit code " + exitCode);
+    }
+    return exitCode;
+  }
+
+  private static String getRequiredVariable(String name) {
+    String value = System.getenv(name);
+    if (value == null || value.isBlank()) {
+      throw new IllegalStateException("Set " + name + " to run the benchmark");
+    }
+    return value;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.Result;
+import org.apache.hop.core.exception.HopException;
+import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.variables.Variables;
+import org.apache.hop.workflow.IActionListener;
+import org.apache.hop.workflow.WorkflowMeta;
+import org.apache.hop.workflow.action.ActionMeta;
+import org.apache.hop.workflow.action.IAction;
+import org.apache.hop.workflow.config.WorkflowRunConfiguration;
+import org.apache.hop.workflow.engines.local.LocalWorkflowEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measure the cost of tracing the action executions of a workflow. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class WorkflowTelemetryBenchmark {
+
+  private static final int ACTION_EXECUTIONS = 10_000;
+
+  private LocalWorkflowEngine workflow;
+  private IActionListener actionListener;
+  private ActionMeta actionMeta;
+  private IAction action;
+  private Result result;
+
+  @Setup(Level.Trial)
+  public void setup(InMemoryTelemetry telemetry) throws HopException {
+    WorkflowExecutionTelemetryExtensionPoint extensionPoint =
+        new WorkflowExecutionTelemetryExtensionPoint();
+
+    WorkflowMeta workflowMeta = mock(WorkflowMeta.class, withSettings().stubOnly());
+    when(workflowMeta.getFilename()).thenReturn("/benchmark.hwf");
+
+    WorkflowRunConfiguration runConfiguration =
+        mock(WorkflowRunConfiguration.class, withSettings().stubOnly());
+    when(runConfiguration.getName()).thenReturn("local");
+
+    workflow = mock(LocalWorkflowEngine.class, withSettings().stubOnly());
+    when(workflow.getWorkflowMeta()).thenReturn(workflowMeta);
+    when(workflow.getWorkflowName()).thenReturn("benchmark");
+    when(workflow.getWorkflowRunConfiguration()).thenReturn(runConfiguration);
+    when(workflow.getExtensionDataMap()).thenReturn(new HashMap<>());
+    when(workflow.getLogChannelId()).thenReturn("workflow");
+    when(workflow.getContainerId()).thenReturn("container");
+    when(workflow.getExecutionStartDate()).thenReturn(new Date());
+    doAnswer(invocation -> actionListener = invocation.getArgument(0))
+        .when(workflow)
+        .addActionListener(any());
+
+    actionMeta = mock(ActionMeta.class, withSettings().stubOnly());
+    when(actionMeta.getName()).thenReturn("Wait for file");
+
+    action = mock(IAction.class, withSettings().stubOnly());
+    when(action.getPluginId()).thenReturn("WAIT_FOR_FILE");
+    when(action.getExtensionDataMap()).thenReturn(new HashMap<>());
+
+    result = new Result();
+
+    extensionPoint.callExtensionPoint(
+        mock(ILogChannel.class, withSettings().stubOnly()), new Variables(), workflow);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ACTION_EXECUTIONS)
+  public void actionExecutions() {
+    for (int i = 0; i < ACTION_EXECUTIONS; i++) {
+      actionListener.beforeExecution(workflow, actionMeta, action);
+      actionListener.afterExecution(workflow, actionMeta, action, result);
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.transform.TransformMeta;
+
+/**
+ * Find the transform limiting the throughput of a finished pipeline, and its critical path.
+ *
+ * <p>The busy ratio of a transform is the ratio of time it was neither waiting for rows from an
+ * empty input row set nor blocked writing into a full output row set, estimated from the samples
+ * of the {@link RowSetSampler}, so it needs {@code HOP_OTEL_ROWSET_SAMPLING_PERIOD}. Without
+ * samples, for example when the pipeline is shorter than the sampling period, it falls back to the
+ * CPU time of the transform threads over their duration, measured with {@code
+ * HOP_OTEL_TRANSFORM_RESOURCES}, where the time spent waiting for I/O counts as idle. The
+ * bottleneck is the transform with the highest busy ratio, and the critical path is the path of
+ * the pipeline graph with the longest busy time.
+ */
+public class BottleneckAnalysis {
+
+  private final Map<String, Double> busyRatios = new LinkedHashMap<>();
+  private final Map<String, Long> busyTimes = new HashMap<>();
+  private String bottleneck;
+  private List<String> criticalPath = List.of();
+
+  private BottleneckAnalysis() {
+    super();
+  }
+
+  /**
+   * Analyze a finished pipeline.
+   *
+   * @param pipelineMeta the pipeline metadata
+   * @param components the components of the pipeline
+   * @param sampler the sampler of its row sets, closed, or null if the row sets were not sampled
+   * @return the analysis, without result if neither the row sets were sampled nor the CPU time of
+   *     the transforms measured
+   */
+  public static BottleneckAnalysis analyze(
+      PipelineMeta pipelineMeta,
+      Collection<? extends IEngineComponent> components,
+      RowSetSampler sampler) {
+    BottleneckAnalysis analysis = new BottleneckAnalysis();
+
+    Map<String, Double> ratios = Map.of();
+    if (sampler != null) {
+      ratios = getSampledBusyRatios(pipelineMeta, sampler);
+    }
+    if (ratios.isEmpty()) {
+      ratios = getCpuBusyRatios(components);
+    }
+    if (ratios.isEmpty()) {
+      return analysis;
+    }
+
+    // Longest execution of the copies of each transform
+    Map<String, Long> durations = new HashMap<>();
+    for (IEngineComponent component : components) {
+      durations.merge(component.getName(), component.getExecutionDuration(), Math::max);
+    }
+
+    double max = 0;
+    for (TransformMeta transformMeta : pipelineMeta.getTransforms()) {
+      String name = transformMeta.getName();
+      Double ratio = ratios.get(name);
+      if (ratio == null) {
+        continue;
+      }
+      double busy = Math.min(1, Math.max(0, ratio));
+      analysis.busyRatios.put(name, busy);
+      analysis.busyTimes.put(name, Math.round(busy * durations.getOrDefault(name, 0L)));
+      if (busy > max) {
+        max = busy;
+        analysis.bottleneck = name;
+      }
+    }
+
+    analysis.criticalPath = analysis.findCriticalPath(pipelineMeta);
+
+    return analysis;
+  }
+
+  /** Estimate the busy ratio of every transform from the samples of its row sets. */
+  private static Map<String, Double> getSampledBusyRatios(
+      PipelineMeta pipelineMeta, RowSetSampler sampler) {
+
+    // Sum the ratios of the input and output row sets of each transform
+    Map<String, double[]> inputEmpty = new HashMap<>();
+    Map<String, double[]> outputFull = new HashMap<>();
+    for (RowSetSampler.Stats stats : sampler.getStats()) {
+      if (stats.getSamples() == 0) {
+        continue;
+      }
+      add(inputEmpty, stats.getRowSet().getDestinationTransformName(), stats.getEmptyRatio());
+      add(outputFull, stats.getRowSet().getOriginTransformName(), stats.getFullRatio());
+    }
+    if (inputEmpty.isEmpty()) {
+      return Map.of();
+    }
+
+    Map<String, Double> ratios = new HashMap<>();
+    for (TransformMeta transformMeta : pipelineMeta.getTransforms()) {
+      String name = transformMeta.getName();
+      ratios.put(name, 1 - average(inputEmpty.get(name)) - average(outputFull.get(name)));
+    }
+    return ratios;
+  }
+
+  /** Estimate the busy ratio of the transforms of which the CPU time was measured. */
+  private static Map<String, Double> getCpuBusyRatios(
+      Collection<? extends IEngineComponent> components) {
+
+    // Sum the CPU time in nanoseconds and the duration in milliseconds of the copies
+    Map<String, long[]> times = new HashMap<>();
+    for (IEngineComponent component : components) {
+      long cpuTime = ExecutionTelemetry.getCpuTime(component);
+      if (cpuTime < 0 || component.getExecutionDuration() <= 0) {
+        continue;
+      }
+      long[] sum = times.computeIfAbsent(component.getName(), key -> new long[2]);
+      sum[0] += cpuTime;
+      sum[1] += component.getExecutionDuration();
+    }
+
+    Map<String, Double> ratios = new HashMap<>();
+    times.forEach((name, sum) -> ratios.put(name, sum[0] / 1e6 / sum[1]));
+    return ratios;
+  }
+
+  private static void add(Map<String, double[]> ratios, String name, double ratio) {
+    double[] sum = ratios.computeIfAbsent(name, key -> new double[2]);
+    sum[0] += ratio;
+    sum[1]++;
+  }
+
+  private static double average(double[] sum) {
+    return sum == null ? 0 : sum[0] / sum[1];
+  }
+
+  /** Find the path from a first transform to a last one with the longest busy time. */
+  private List<String> findCriticalPath(PipelineMeta pipelineMeta) {
+    Map<String, List<String>> paths = new HashMap<>();
+    List<String> longest = List.of();
+    long longestTime = -1;
+    for (TransformMeta transformMeta : pipelineMeta.getTransforms()) {
+      List<String> path = findLongestPath(pipelineMeta, transformMeta, paths, new HashSet<>());
+      long time = getBusyTime(path);
+      if (time > longestTime) {
+        longest = path;
+        longestTime = time;
+      }
+    }
+    return longest;
+  }
+
+  private List<String> findLongestPath(
+      PipelineMeta pipelineMeta,
+      TransformMeta transformMeta,
+      Map<String, List<String>> paths,
+      Set<String> visiting) {
+    String name = transformMeta.getName();
+    List<String> path = paths.get(name);
+    if (path != null) {
+      return path;
+    }
+
+    // Ignore loops
+    if (!visiting.add(name)) {
+      return List.of();
+    }
+
+    List<String> longest = List.of();
+    long longestTime = -1;
+    for (TransformMeta next : pipelineMeta.findNextTransforms(transformMeta)) {
+      List<String> nextPath = findLongestPath(pipelineMeta, next, paths, visiting);
+      long time = getBusyTime(nextPath);
+      if (time > longestTime) {
+        longest = nextPath;
+        longestTime = time;
+      }
+    }
+    visiting.remove(name);
+
+    path = new ArrayList<>(longest.size() + 1);
+    path.add(name);
+    path.addAll(longest);
+    paths.put(name, path);
+    return path;
+  }
+
+  private long getBusyTime(List<String> path) {
+    long time = 0;
+    for (String name : path) {
+      time += busyTimes.getOrDefault(name, 0L);
+    }
+    return time;
+  }
+
+  /** Gets the name of the transform with the highest busy ratio, or null if unknown. */
+  public String getBottleneck() {
+    return bottleneck;
+  }
+
+  public List<String> getCriticalPath() {
+    return criticalPath;
+  }
+
+  public Map<String, Double> getBusyRatios() {
+    return busyRatios;
+  }
+
+  /** Record the bottleneck and critical path as attributes and the busy ratios as events. */
+  public void addTo(Span span) {
+    if (bottleneck == null) {
+      return;
+    }
+
+    span.setAttribute(HopAttributes.PIPELINE_BOTTLENECK_TRANSFORM, bottleneck);
+    span.setAttribute(HopAttributes.PIPELINE_CRITICAL_PATH, criticalPath);
+    busyRatios.forEach(
+        (name, ratio) ->
+            span.addEvent(
+                "Transform load",
+                Attributes.of(
+                    HopAttributes.TRANSFORM_NAME,
+                    name,
+                    HopAttributes.TRANSFORM_BUSY_RATIO,
+                    ratio)));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.EngineComponent;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+
+/**
+ * A copy of the state of a finished engine component, so its telemetry can be recorded by the
+ * {@link TelemetryExecutor} once the execution thread has moved on.
+ */
+public class ComponentSnapshot extends EngineComponent {
+
+  private final String transformPluginId;
+  private final ExecutionAggregate childAggregate;
+  private final long cpuTime;
+
+  public ComponentSnapshot(IEngineComponent component, String transformPluginId) {
+    super(component.getName(), component.getCopyNr());
+    this.transformPluginId = transformPluginId;
+    this.childAggregate = ExecutionTelemetry.getChildSummary(component);
+    this.cpuTime = ExecutionTelemetry.getCpuTime(component);
+
+    setLogChannelId(component.getLogChannelId());
+    setLinesRead(component.getLinesRead());
+    setLinesWritten(component.getLinesWritten());
+    setLinesInput(component.getLinesInput());
+    setLinesOutput(component.getLinesOutput());
+    setLinesUpdated(component.getLinesUpdated());
+    setLinesRejected(component.getLinesRejected());
+    setErrors(component.getErrors());
+    setStatusDescription(component.getStatusDescription());
+    setExecutionStartDate(component.getExecutionStartDate());
+    setExecutionEndDate(component.getExecutionEndDate());
+    setExecutionDuration(component.getExecutionDuration());
+  }
+
+  /**
+   * Take a snapshot of the components of a finished pipeline.
+   *
+   * @return the snapshots by component, in the order of the components
+   */
+  public static Map<IEngineComponent, ComponentSnapshot> of(
+      PipelineMeta pipelineMeta, List<IEngineComponent> components) {
+    Map<IEngineComponent, ComponentSnapshot> snapshots = new LinkedHashMap<>();
+    for (IEngineComponent component : components) {
+      snapshots.put(
+          component,
+          new ComponentSnapshot(
+              component, ExecutionTelemetry.getTransformPluginId(pipelineMeta, component)));
+    }
+    return snapshots;
+  }
+
+  public String getTransformPluginId() {
+    return transformPluginId;
+  }
+
+  /** Gets the aggregate of the child executions launched by the component, or null. */
+  public ExecutionAggregate getChildAggregate() {
+    return childAggregate;
+  }
+
+  /** Gets the CPU time of the thread of the component in nanoseconds, or -1 if not measured. */
+  public long getCpuTime() {
+    return cpuTime;
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only buffer of export requests persisted in memory-mapped segment files.
+ *
+ * <p>A record is written as its payload length, a signal byte and the payload. The length is
+ * written last, so a record torn by a crash is ignored when the segments are opened again. A
+ * replayed record is marked as consumed by clearing its signal byte, and a segment is deleted once
+ * all its records are consumed. When the size cap is reached the oldest segment is evicted.
+ *
+ * <p>The mapping of a segment is released by the garbage collector. On Windows a segment file still
+ * mapped can not be deleted, it is deleted when the buffer is opened again if all its records were
+ * consumed.
+ */
+public class DiskBuffer implements Closeable {
+
+  /** Size of a segment file, also the maximum size of a record. */
+  public static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  private static final int HEADER_SIZE = Integer.BYTES + 1;
+  private static final byte CONSUMED = 0;
+  private static final String EXTENSION = ".seg";
+
+  /** Name of a segment file, its sequence number. Other files of the directory are ignored. */
+  private static final Pattern SEGMENT_NAME = Pattern.compile("0*\\d{1,18}\\" + EXTENSION);
+
+  /** A record read from the buffer. */
+  public record Record(Segment segment, int position, byte signal, byte[] payload) {}
+
+  private final Path directory;
+  private final long maxSize;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private long sequence;
+  private long evicted;
+  private boolean closed;
+
+  /**
+   * Open the buffer, records left by a previous run are kept to be replayed.
+   *
+   * @param directory the directory of the segment files
+   * @param maxSize the maximum size of the segment files on disk, at least two segments
+   */
+  public DiskBuffer(Path directory, long maxSize) throws IOException {
+    this.directory = directory;
+    this.maxSize = Math.max(maxSize, 2L * SEGMENT_SIZE);
+
+    Files.createDirectories(directory);
+    List<Path> files;
+    try (Stream<Path> stream = Files.list(directory)) {
+      files =
+          stream
+              .filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+              .sorted()
+              .toList();
+    }
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      sequence = Math.max(sequence, Long.parseLong(name.substring(0, name.length() - 4)));
+      Segment segment = new Segment(file);
+      if (segment.isConsumed()) {
+        segment.delete();
+      } else {
+        segments.add(segment);
+      }
+    }
+  }
+
+  /**
+   * Append a record, evicting the oldest segment if the size cap is reached.
+   *
+   * @return false if the payload is larger than a segment
+   * @throws ClosedChannelException if the buffer is closed
+   */
+  public synchronized boolean append(byte signal, byte[] payload) throws IOException {
+    if (closed) {
+      throw new ClosedChannelException();
+    }
+    if (payload.length > SEGMENT_SIZE - HEADER_SIZE) {
+      return false;
+    }
+
+    Segment writer = segments.peekLast();
+    if (writer == null || !writer.hasRoom(payload.length)) {
+      writer = new Segment(directory.resolve(String.format("%020d%s", ++sequence, EXTENSION)));
+      segments.add(writer);
+
+      while ((long) segments.size() * SEGMENT_SIZE > maxSize) {
+        Segment oldest = segments.poll();
+        evicted += oldest.getCount();
+        oldest.delete();
+      }
+    }
+    writer.append(signal, payload);
+    return true;
+  }
+
+  /** Get the oldest record not yet consumed, or null if the buffer is empty. */
+  public synchronized Record peek() {
+    for (Segment segment : segments) {
+      if (!segment.isConsumed()) {
+        return segment.read();
+      }
+    }
+    return null;
+  }
+
+  /** Mark a record as consumed, the segment is deleted when all its records are consumed. */
+  public synchronized void remove(Record record) throws IOException {
+    Segment segment = record.segment();
+    if (!segments.contains(segment)) {
+      // Evicted while the record was replayed
+      return;
+    }
+    segment.consume(record.position());
+    if (segment.isConsumed() && segment != segments.peekLast()) {
+      segments.remove(segment);
+      segment.delete();
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    for (Segment segment : segments) {
+      if (!segment.isConsumed()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Gets the size of the segment files on disk. */
+  public synchronized long getSize() {
+    return (long) segments.size() * SEGMENT_SIZE;
+  }
+
+  /** Gets the number of records lost by eviction since the buffer was opened. */
+  public synchronized long getEvicted() {
+    return evicted;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    for (Segment segment : segments) {
+      segment.close();
+    }
+    segments.clear();
+  }
+
+  /** A segment file mapped in memory. */
+  public static class Segment {
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /** Position of the first record not consumed. */
+    private int readPosition;
+
+    /** Position after the last record. */
+    private int writePosition;
+
+    /** Number of records not consumed. */
+    private int count;
+
+    Segment(Path file) throws IOException {
+      this.file = file;
+      this.channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+
+      // Scan records left by a previous run
+      int position = 0;
+      readPosition = -1;
+      while (position + HEADER_SIZE <= SEGMENT_SIZE) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > SEGMENT_SIZE) {
+          break;
+        }
+        if (buffer.get(position + Integer.BYTES) != CONSUMED) {
+          if (readPosition < 0) {
+            readPosition = position;
+          }
+          count++;
+        }
+        position += HEADER_SIZE + length;
+      }
+      writePosition = position;
+      if (readPosition < 0) {
+        readPosition = writePosition;
+      }
+    }
+
+    boolean hasRoom(int length) {
+      return writePosition + HEADER_SIZE + length <= SEGMENT_SIZE;
+    }
+
+    void append(byte signal, byte[] payload) {
+      buffer.put(writePosition + Integer.BYTES, signal);
+      buffer.put(writePosition + HEADER_SIZE, payload);
+      buffer.putInt(writePosition, payload.length);
+      writePosition += HEADER_SIZE + payload.length;
+      count++;
+    }
+
+    Record read() {
+      int length = buffer.getInt(readPosition);
+      byte[] payload = new byte[length];
+      buffer.get(readPosition + HEADER_SIZE, payload);
+      return new Record(this, readPosition, buffer.get(readPosition + Integer.BYTES), payload);
+    }
+
+    void consume(int position) {
+      if (buffer.get(position + Integer.BYTES) == CONSUMED) {
+        return;
+      }
+      buffer.put(position + Integer.BYTES, CONSUMED);
+      count--;
+
+      // Move to the next record not consumed
+      while (readPosition < writePosition
+          && buffer.get(readPosition + Integer.BYTES) == CONSUMED) {
+        readPosition += HEADER_SIZE + buffer.getInt(readPosition);
+      }
+    }
+
+    boolean isConsumed() {
+      return count == 0;
+    }
+
+    int getCount() {
+      return count;
+    }
+
+    void close() throws IOException {
+      buffer.force();
+      channel.close();
+    }
+
+    void delete() throws IOException {
+      channel.close();
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // Still mapped on Windows until the buffer is garbage collected
+      }
+    }
+  }
+}
@@ -0,0 +1,412 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.exporter.internal.marshal.Marshaler;
+import io.opentelemetry.exporter.internal.otlp.logs.LogsRequestMarshaler;
+import io.opentelemetry.exporter.internal.otlp.metrics.MetricsRequestMarshaler;
+import io.opentelemetry.exporter.internal.otlp.traces.TraceRequestMarshaler;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.export.MemoryMode;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.logging.LogChannel;
+
+/**
+ * Keep the exports that failed in a {@link DiskBuffer} and replay them once the collector is
+ * reachable again.
+ *
+ * <p>While the buffer is not empty new exports are appended to it to keep the order of the data,
+ * so the batch processors never wait for an unreachable collector. Records are replayed with the
+ * protocol of the exporter, OTLP grpc or http/protobuf, by a single background thread with an
+ * exponential backoff. The JDK HTTP client exposes neither the gRPC trailers nor HTTP/2 without
+ * TLS, so gRPC requests are sent with OkHttp, the client of the OTLP exporters.
+ *
+ * <p>The failed exports are marshaled to protobuf by the internal marshalers of the OTLP exporters,
+ * like {@link OtlpFileWriter}, so the buffer format follows the OpenTelemetry version of the pom.
+ */
+public class DiskBufferedExporter implements Closeable {
+
+  private static final ILogChannel log = new LogChannel("OpenTelemetry");
+
+  public static final byte SIGNAL_TRACES = 1;
+  public static final byte SIGNAL_METRICS = 2;
+  public static final byte SIGNAL_LOGS = 3;
+
+  private static final long MIN_RETRY_DELAY = 1000;
+  private static final long MAX_RETRY_DELAY = 60000;
+
+  private static final MediaType GRPC_MEDIA_TYPE = MediaType.get("application/grpc");
+
+  /** Retryable status codes of the OTLP specification over gRPC. */
+  private static final Set<String> GRPC_RETRYABLE_STATUS =
+      Set.of("1", "4", "8", "10", "11", "14", "15");
+
+  private final DiskBuffer buffer;
+  private final String endpoint;
+  private final Map<String, String> headers;
+  private final Duration timeout;
+  private final HttpClient client;
+  private final OkHttpClient grpcClient;
+  private final ScheduledExecutorService scheduler;
+  private long retryDelay = MIN_RETRY_DELAY;
+  private volatile boolean closed;
+
+  public DiskBufferedExporter(DiskBuffer buffer, OpenTelemetryConfig config) {
+    this.buffer = buffer;
+    this.endpoint = config.getEndpoint();
+    this.headers = config.getHeaders();
+    this.timeout = config.getTimeout();
+    if ("grpc".equalsIgnoreCase(config.getProtocol())) {
+      this.client = null;
+      this.grpcClient =
+          new OkHttpClient.Builder()
+              .callTimeout(timeout)
+              .protocols(
+                  endpoint.startsWith("https:")
+                      ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                      : List.of(Protocol.H2_PRIOR_KNOWLEDGE))
+              .build();
+    } else {
+      this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+      this.grpcClient = null;
+    }
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "OpenTelemetry disk buffer replay");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    // Replay records left by a previous run
+    scheduler.schedule(this::replay, 0, TimeUnit.MILLISECONDS);
+  }
+
+  public SpanExporter wrap(SpanExporter exporter) {
+    return new BufferedSpanExporter(exporter);
+  }
+
+  public MetricExporter wrap(MetricExporter exporter) {
+    return new BufferedMetricExporter(exporter);
+  }
+
+  public LogRecordExporter wrap(LogRecordExporter exporter) {
+    return new BufferedLogRecordExporter(exporter);
+  }
+
+  /** Gets the buffer of the failed exports */
+  public DiskBuffer getBuffer() {
+    return buffer;
+  }
+
+  protected CompletableResultCode export(
+      byte signal, Supplier<Marshaler> marshaler, Supplier<CompletableResultCode> export) {
+
+    // Keep the order of the data while the buffer is replayed
+    if (!buffer.isEmpty()) {
+      return store(signal, marshaler);
+    }
+
+    CompletableResultCode result = new CompletableResultCode();
+    CompletableResultCode exported = export.get();
+    exported.whenComplete(
+        () -> {
+          if (exported.isSuccess()) {
+            result.succeed();
+          } else {
+            // Stored on disk, the data is not lost
+            CompletableResultCode stored = store(signal, marshaler);
+            stored.whenComplete(() -> copy(stored, result));
+          }
+        });
+    return result;
+  }
+
+  private static void copy(CompletableResultCode from, CompletableResultCode to) {
+    if (from.isSuccess()) {
+      to.succeed();
+    } else {
+      to.fail();
+    }
+  }
+
+  protected CompletableResultCode store(byte signal, Supplier<Marshaler> marshaler) {
+    try {
+      Marshaler request = marshaler.get();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(request.getBinarySerializedSize());
+      request.writeBinaryTo(out);
+      if (buffer.append(signal, out.toByteArray())) {
+        return CompletableResultCode.ofSuccess();
+      }
+      log.logError("OpenTelemetry export request too large to be buffered on disk");
+    } catch (IOException e) {
+      log.logError("Unable to buffer OpenTelemetry export on disk", e);
+    }
+    return CompletableResultCode.ofFailure();
+  }
+
+  /** Replay the buffered records in order, until the buffer is empty or a request fails. */
+  private void replay() {
+    try {
+      DiskBuffer.Record record;
+      while (!closed && (record = buffer.peek()) != null) {
+        if (!send(record)) {
+          retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+          break;
+        }
+        buffer.remove(record);
+        retryDelay = MIN_RETRY_DELAY;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (Exception e) {
+      log.logError("Error replaying OpenTelemetry exports buffered on disk", e);
+    }
+
+    if (!closed) {
+      scheduler.schedule(this::replay, retryDelay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Send a record to the collector.
+   *
+   * @return true if the record was accepted, or rejected as invalid and must not be retried
+   */
+  private boolean send(DiskBuffer.Record record) throws InterruptedException {
+    if (grpcClient != null) {
+      String service =
+          switch (record.signal()) {
+            case SIGNAL_TRACES -> "trace.v1.TraceService";
+            case SIGNAL_METRICS -> "metrics.v1.MetricsService";
+            case SIGNAL_LOGS -> "logs.v1.LogsService";
+            default -> null;
+          };
+      return service == null
+          || sendGrpc("/opentelemetry.proto.collector." + service + "/Export", record.payload());
+    }
+
+    String path =
+        switch (record.signal()) {
+          case SIGNAL_TRACES -> "/v1/traces";
+          case SIGNAL_METRICS -> "/v1/metrics";
+          case SIGNAL_LOGS -> "/v1/logs";
+          default -> null;
+        };
+    return path == null || sendHttp(path, record.payload());
+  }
+
+  private boolean sendHttp(String path, byte[] payload) throws InterruptedException {
+    HttpRequest.Builder request =
+        HttpRequest.newBuilder(URI.create(endpoint + path))
+            .timeout(timeout)
+            .header("Content-Type", "application/x-protobuf")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+    headers.forEach(request::header);
+
+    try {
+      HttpResponse<Void> response =
+          client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+      int status = response.statusCode();
+      if (status >= 200 && status < 300) {
+        return true;
+      }
+      // Retryable status codes of the OTLP specification
+      if (status == 429 || status == 502 || status == 503 || status == 504) {
+        return false;
+      }
+      log.logError("OpenTelemetry collector rejected a buffered export with status " + status);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private boolean sendGrpc(String path, byte[] payload) {
+    // A gRPC message is prefixed with a compression flag and its length
+    byte[] message =
+        ByteBuffer.allocate(5 + payload.length)
+            .put((byte) 0)
+            .putInt(payload.length)
+            .put(payload)
+            .array();
+    Request.Builder request =
+        new Request.Builder()
+            .url(endpoint + path)
+            .header("te", "trailers")
+            .post(RequestBody.create(message, GRPC_MEDIA_TYPE));
+    headers.forEach(request::header);
+
+    try (Response response = grpcClient.newCall(request.build()).execute()) {
+      // The status is in the trailers, read after the body, or in the headers of an error
+      response.body().bytes();
+      String status = response.header("grpc-status");
+      if (status == null) {
+        status = response.trailers().get("grpc-status");
+      }
+      if (status == null) {
+        // Not answered by a gRPC server, a proxy for example
+        return false;
+      }
+      if (status.equals("0")) {
+        return true;
+      }
+      if (GRPC_RETRYABLE_STATUS.contains(status)) {
+        return false;
+      }
+      log.logError("OpenTelemetry collector rejected a buffered export with gRPC status " + status);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    scheduler.shutdownNow();
+    if (grpcClient != null) {
+      grpcClient.dispatcher().executorService().shutdown();
+      grpcClient.connectionPool().evictAll();
+    }
+    buffer.close();
+  }
+
+  private class BufferedSpanExporter implements SpanExporter {
+    private final SpanExporter delegate;
+
+    BufferedSpanExporter(SpanExporter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      return DiskBufferedExporter.this.export(
+          SIGNAL_TRACES, () -> TraceRequestMarshaler.create(spans), () -> delegate.export(spans));
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+
+  private class BufferedMetricExporter implements MetricExporter {
+    private final MetricExporter delegate;
+
+    BufferedMetricExporter(MetricExporter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<MetricData> metrics) {
+      return DiskBufferedExporter.this.export(
+          SIGNAL_METRICS,
+          () -> MetricsRequestMarshaler.create(metrics),
+          () -> delegate.export(metrics));
+    }
+
+    @Override
+    public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+      return delegate.getAggregationTemporality(instrumentType);
+    }
+
+    @Override
+    public Aggregation getDefaultAggregation(InstrumentType instrumentType) {
+      return delegate.getDefaultAggregation(instrumentType);
+    }
+
+    @Override
+    public MemoryMode getMemoryMode() {
+      // Metrics may be marshaled after the export, the data must not be reused
+      return MemoryMode.IMMUTABLE_DATA;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+
+  private class BufferedLogRecordExporter implements LogRecordExporter {
+    private final LogRecordExporter delegate;
+
+    BufferedLogRecordExporter(LogRecordExporter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<LogRecordData> logs) {
+      return DiskBufferedExporter.this.export(
+          SIGNAL_LOGS, () -> LogsRequestMarshaler.create(logs), () -> delegate.export(logs));
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import java.util.Collection;
+import java.util.Map;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.EngineMetrics;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IEngineMetric;
+
+/**
+ * Record the engine metrics of the components of a finished pipeline, whatever the pipeline engine.
+ *
+ * <p>Every numeric {@link IEngineMetric} reported by the engine, for example the rows read, written
+ * or rejected, is added to a counter by transform type and metric code. The rows per second of
+ * each component is recorded when the engine knows its execution duration, which is not the case
+ * of the Beam runners.
+ */
+public class EngineMetricsBridge {
+
+  private final LongCounter metric;
+  private final DoubleHistogram throughput;
+
+  public EngineMetricsBridge(Meter meter) {
+    metric =
+        meter
+            .counterBuilder("transform.engine.metric")
+            .setDescription("The engine metrics of the finished transforms.")
+            .build();
+    throughput =
+        meter
+            .histogramBuilder("transform.rows.throughput")
+            .setDescription("The number of rows processed per second by a transform.")
+            .setUnit("{row}/s")
+            .build();
+  }
+
+  /**
+   * Record the engine metrics of a finished pipeline.
+   *
+   * @param pipelineMeta the pipeline metadata
+   * @param engineMetrics the engine metrics of the pipeline, or null if not available
+   * @param components the snapshots of the components of the pipeline
+   * @param engine the id of the pipeline engine plugin
+   */
+  public void record(
+      PipelineMeta pipelineMeta,
+      EngineMetrics engineMetrics,
+      Collection<? extends IEngineComponent> components,
+      String engine) {
+    if (engineMetrics != null) {
+      for (IEngineComponent component : engineMetrics.getComponents()) {
+        Map<IEngineMetric, Long> metrics = engineMetrics.getComponentMetricsMap().get(component);
+        if (metrics == null) {
+          continue;
+        }
+        String pluginId = ExecutionTelemetry.getTransformPluginId(pipelineMeta, component);
+        for (Map.Entry<IEngineMetric, Long> entry : metrics.entrySet()) {
+          if (!entry.getKey().isNumeric() || entry.getValue() == null) {
+            continue;
+          }
+          metric.add(
+              entry.getValue(),
+              Attributes.builder()
+                  .put(HopAttributes.PIPELINE_ENGINE, engine)
+                  .put(HopAttributes.TRANSFORM_PLUGIN_ID, pluginId)
+                  .put(HopAttributes.ENGINE_METRIC, entry.getKey().getCode())
+                  .build());
+        }
+      }
+    }
+
+    for (IEngineComponent component : components) {
+      String pluginId = ExecutionTelemetry.getTransformPluginId(pipelineMeta, component);
+      long duration = component.getExecutionDuration();
+      if (component.getExecutionStartDate() != null && duration > 0) {
+        throughput.record(
+            ExecutionTelemetry.getRows(component) * 1000d / duration,
+            Attributes.builder()
+                .put(HopAttributes.PIPELINE_ENGINE, engine)
+                .put(HopAttributes.TRANSFORM_PLUGIN_ID, pluginId)
+                .build());
+      }
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.Span;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Aggregate the repeated executions of the same action, or the child executions launched by a
+ * transform, instead of a span per execution.
+ *
+ * <p>Only the first executions are traced individually, as well as the executions in error. The
+ * executions are counted, with their total, least and most duration and a histogram of their
+ * durations in seconds, with the bucket bounds {@link #BOUNDS}, from which percentiles are
+ * estimated.
+ */
+public class ExecutionAggregate {
+
+  /** The upper bounds in seconds of the buckets of the duration histogram. */
+  public static final List<Double> BOUNDS = List.of(0.001, 0.01, 0.1, 1d, 10d, 60d, 600d);
+
+  private final int threshold;
+  private int executions;
+  private long count;
+  private long errors;
+  private double total;
+  private double min = Double.MAX_VALUE;
+  private double max;
+  private final long[] counts = new long[BOUNDS.size() + 1];
+  private Instant end;
+  private Span span;
+
+  /**
+   * @param threshold the number of executions traced individually before aggregating
+   */
+  public ExecutionAggregate(int threshold) {
+    this.threshold = threshold;
+  }
+
+  /**
+   * Count a new execution.
+   *
+   * @return true if the execution is folded in the summary, false if it is traced individually
+   */
+  public synchronized boolean fold() {
+    return nextExecution() > threshold;
+  }
+
+  /** Count a new execution and get its number, starting at one. */
+  public synchronized int nextExecution() {
+    return ++executions;
+  }
+
+  /** Record an execution, in error or not. */
+  public synchronized void record(double duration, boolean error) {
+    count++;
+    if (error) {
+      errors++;
+    }
+    total += duration;
+    min = Math.min(min, duration);
+    max = Math.max(max, duration);
+    int bucket = 0;
+    while (bucket < BOUNDS.size() && duration > BOUNDS.get(bucket)) {
+      bucket++;
+    }
+    counts[bucket]++;
+    end = Instant.now();
+  }
+
+  /** Gets the summary span, started on the first folded execution. */
+  public synchronized Span getSpan(Supplier<Span> starter) {
+    if (span == null) {
+      span = starter.get();
+    }
+    return span;
+  }
+
+  /** Gets the number of recorded executions. */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /** Estimate a percentile of the durations, the upper bound of its bucket capped by the most. */
+  public synchronized double getPercentile(double percentile) {
+    long rank = (long) Math.ceil(percentile * count);
+    long seen = 0;
+    for (int bucket = 0; bucket < BOUNDS.size(); bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return Math.min(BOUNDS.get(bucket), max);
+      }
+    }
+    return max;
+  }
+
+  /** Gets the attributes summarizing the recorded executions. */
+  public synchronized Attributes getAttributes() {
+    AttributesBuilder attributes =
+        Attributes.builder()
+            .put(HopAttributes.AGGREGATE_COUNT, count)
+            .put(HopAttributes.AGGREGATE_ERRORS, errors)
+            .put(HopAttributes.AGGREGATE_DURATION_TOTAL, total);
+    if (count > 0) {
+      attributes
+          .put(HopAttributes.AGGREGATE_DURATION_MIN, min)
+          .put(HopAttributes.AGGREGATE_DURATION_MAX, max)
+          .put(HopAttributes.AGGREGATE_DURATION_P50, getPercentile(0.5))
+          .put(HopAttributes.AGGREGATE_DURATION_P90, getPercentile(0.9))
+          .put(HopAttributes.AGGREGATE_DURATION_P99, getPercentile(0.99))
+          .put(HopAttributes.AGGREGATE_DURATION_BOUNDS, BOUNDS)
+          .put(
+              HopAttributes.AGGREGATE_DURATION_COUNTS,
+              Arrays.stream(counts).boxed().toList());
+    }
+    return attributes.build();
+  }
+
+  /** End the summary span, at the end of the last folded execution. */
+  public synchronized void end() {
+    if (span == null) {
+      return;
+    }
+    span.setAllAttributes(getAttributes());
+    if (end != null) {
+      span.end(end);
+    } else {
+      span.end();
+    }
+  }
+}
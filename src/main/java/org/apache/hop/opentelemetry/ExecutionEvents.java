@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import java.util.Map;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.apache.hop.core.IExtensionData;
+import org.apache.hop.core.Result;
+import org.apache.hop.core.logging.ILoggingObject;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+import org.apache.hop.pipeline.transform.ITransform;
+import org.apache.hop.workflow.WorkflowMeta;
+import org.apache.hop.workflow.action.ActionMeta;
+import org.apache.hop.workflow.action.IAction;
+import org.apache.hop.workflow.action.IActionListener;
+import org.apache.hop.workflow.engine.IWorkflowEngine;
+
+/**
+ * Emit Java Flight Recorder events for the executions of pipelines, transforms, workflows and
+ * actions, so the samples of a recording can be correlated with the Hop executions.
+ *
+ * <p>The events are emitted whether the telemetry is exported or not, and cost next to nothing
+ * when no recording is running. An event carries the trace and span ids of its execution when it is
+ * traced, read from the extension data when the execution ends.
+ */
+public class ExecutionEvents {
+
+  public static final String CATEGORY = "Apache Hop";
+
+  /** Fields common to the events of all executions. */
+  abstract static class ExecutionEvent extends Event {
+
+    @Label("Execution Id")
+    String executionId;
+
+    @Label("Parent Execution Id")
+    String parentExecutionId;
+
+    @Label("Name")
+    String name;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Span Id")
+    String spanId;
+
+    @Label("Rows Read")
+    long rowsRead;
+
+    @Label("Rows Written")
+    long rowsWritten;
+
+    @Label("Errors")
+    long errors;
+
+    @Label("Status")
+    String status;
+
+    /** End the event and commit it if a recording wants it, with the span of the execution. */
+    void finish(Object span, long rowsRead, long rowsWritten, long errors) {
+      end();
+      if (!shouldCommit()) {
+        return;
+      }
+      if (span instanceof Span traced) {
+        SpanContext spanContext = traced.getSpanContext();
+        if (spanContext.isSampled()) {
+          this.traceId = spanContext.getTraceId();
+          this.spanId = spanContext.getSpanId();
+        }
+      }
+      this.rowsRead = rowsRead;
+      this.rowsWritten = rowsWritten;
+      this.errors = errors;
+      this.status = errors > 0 ? ExecutionTelemetry.STATUS_ERROR : ExecutionTelemetry.STATUS_OK;
+      commit();
+    }
+  }
+
+  @Name("org.apache.hop.PipelineExecution")
+  @Label("Pipeline Execution")
+  @Category(CATEGORY)
+  @Description("The execution of a pipeline, from its preparation to its end.")
+  static class PipelineExecution extends ExecutionEvent {
+
+    @Label("File Path")
+    String filename;
+
+    @Label("Container Id")
+    String containerId;
+  }
+
+  @Name("org.apache.hop.TransformExecution")
+  @Label("Transform Execution")
+  @Category(CATEGORY)
+  @Description("The execution of a transform copy, on the thread of the copy.")
+  static class TransformExecution extends ExecutionEvent {
+
+    @Label("Plugin Id")
+    String pluginId;
+
+    @Label("Copy")
+    int copy;
+  }
+
+  @Name("org.apache.hop.WorkflowExecution")
+  @Label("Workflow Execution")
+  @Category(CATEGORY)
+  @Description("The execution of a workflow, from its start to its end.")
+  static class WorkflowExecution extends ExecutionEvent {
+
+    @Label("File Path")
+    String filename;
+
+    @Label("Container Id")
+    String containerId;
+  }
+
+  @Name("org.apache.hop.ActionExecution")
+  @Label("Action Execution")
+  @Category(CATEGORY)
+  @Description("The execution of an action, on the thread of the workflow.")
+  static class ActionExecution extends ExecutionEvent {
+
+    @Label("Plugin Id")
+    String pluginId;
+  }
+
+  /** Event of the execution of an action in progress. */
+  private static final String ACTION_EVENT = "jfr.action.event";
+
+  private ExecutionEvents() {
+    // Static helpers only
+  }
+
+  /** Emit the event of a pipeline, when it ends. */
+  public static void observe(IPipelineEngine<PipelineMeta> pipeline) {
+    PipelineExecution event = new PipelineExecution();
+    event.executionId = pipeline.getLogChannelId();
+    event.parentExecutionId = getParentExecutionId(pipeline);
+    event.name = pipeline.getPipelineMeta().getName();
+    event.filename = pipeline.getPipelineMeta().getFilename();
+    event.containerId = pipeline.getContainerId();
+    event.begin();
+
+    pipeline.addExecutionFinishedListener(
+        engine -> {
+          Result result = engine.getResult();
+          event.finish(
+              engine.getExtensionDataMap().get(ExecutionTelemetry.SPAN),
+              result != null ? result.getNrLinesRead() : 0,
+              result != null ? result.getNrLinesWritten() : 0,
+              result != null ? result.getNrErrors() : 0);
+        });
+  }
+
+  /**
+   * Emit the events of the transforms of a pipeline, when they end. The components only exist
+   * once the pipeline is about to start their threads.
+   */
+  public static void observeTransforms(IPipelineEngine<PipelineMeta> pipeline) {
+    for (IEngineComponent component : pipeline.getComponents()) {
+      if (!(component instanceof ITransform transform)) {
+        continue;
+      }
+
+      TransformExecution transformEvent = new TransformExecution();
+      transformEvent.executionId = component.getLogChannelId();
+      transformEvent.parentExecutionId = pipeline.getLogChannelId();
+      transformEvent.name = component.getName();
+      transformEvent.pluginId = transform.getTransformPluginId();
+      transformEvent.copy = component.getCopyNr();
+
+      transform.addTransformStartedListener(
+          (engine, transformMeta, t) -> transformEvent.begin());
+      transform.addTransformFinishedListener(
+          (engine, transformMeta, t) ->
+              transformEvent.finish(
+                  getSpan(component),
+                  component.getLinesRead() + component.getLinesInput(),
+                  component.getLinesWritten() + component.getLinesOutput(),
+                  component.getErrors()));
+    }
+  }
+
+  /** Emit the events of a workflow and of its actions, when they end. */
+  public static void observe(IWorkflowEngine<WorkflowMeta> workflow) {
+    WorkflowExecution event = new WorkflowExecution();
+    event.executionId = workflow.getLogChannelId();
+    event.parentExecutionId = getParentExecutionId(workflow);
+    event.name = workflow.getWorkflowName();
+    event.filename = workflow.getWorkflowMeta().getFilename();
+    event.containerId = workflow.getContainerId();
+    event.begin();
+
+    workflow.addExecutionFinishedListener(
+        engine -> {
+          Result result = engine.getResult();
+          event.finish(
+              engine.getExtensionDataMap().get(ExecutionTelemetry.SPAN),
+              result != null ? result.getNrLinesRead() : 0,
+              result != null ? result.getNrLinesWritten() : 0,
+              result != null ? result.getNrErrors() : 0);
+        });
+
+    workflow.addActionListener(
+        new IActionListener() {
+          @Override
+          public void beforeExecution(
+              IWorkflowEngine workflow, ActionMeta actionMeta, IAction action) {
+            ActionExecution actionEvent = new ActionExecution();
+            actionEvent.parentExecutionId = workflow.getLogChannelId();
+            actionEvent.name = actionMeta.getName();
+            actionEvent.pluginId = action.getPluginId();
+            actionEvent.begin();
+            action.getExtensionDataMap().put(ACTION_EVENT, actionEvent);
+          }
+
+          @Override
+          public void afterExecution(
+              IWorkflowEngine workflow, ActionMeta actionMeta, IAction action, Result result) {
+            Map<String, Object> dataMap = action.getExtensionDataMap();
+            if (dataMap.remove(ACTION_EVENT) instanceof ActionExecution actionEvent) {
+              actionEvent.finish(
+                  dataMap.get(ExecutionTelemetry.SPAN),
+                  result.getNrLinesRead(),
+                  result.getNrLinesWritten(),
+                  result.getNrErrors());
+            }
+          }
+        });
+  }
+
+  private static Object getSpan(IEngineComponent component) {
+    if (component instanceof IExtensionData extension) {
+      return extension.getExtensionDataMap().get(ExecutionTelemetry.SPAN);
+    }
+    return null;
+  }
+
+  private static String getParentExecutionId(ILoggingObject object) {
+    ILoggingObject parent = object.getParent();
+    return parent != null ? parent.getLogChannelId() : null;
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.semconv.JvmAttributes;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Attribute the CPU time and the heap allocations of the JVM to the running workflow and pipeline
+ * executions, and add the garbage collection pauses to their spans.
+ *
+ * <p>An execution is measured on the threads registered for it: the threads of the transform
+ * copies of a pipeline, or the thread of a workflow. The usage of a thread is accumulated when it
+ * is removed, and read live by the metric collection while it is running.
+ *
+ * <p>The metrics are attributed to the workflow or pipeline name, not to the execution, to bound
+ * their cardinality. The usage of the finished executions of a name is kept so the counters stay
+ * monotonic across executions.
+ */
+public class ExecutionResourceMonitor implements NotificationListener {
+
+  public static final String INSTRUMENTATION_RUNTIME_SCOPE = "Runtime";
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private static final AttributeKey<String> GC_CAUSE = stringKey("jvm.gc.cause");
+  private static final AttributeKey<Long> GC_DURATION = longKey("jvm.gc.duration");
+
+  /** The CPU time in nanoseconds and the bytes allocated by an execution. */
+  public record Usage(long cpuTime, long allocatedBytes) {
+
+    Usage add(Usage usage) {
+      return new Usage(cpuTime + usage.cpuTime, allocatedBytes + usage.allocatedBytes);
+    }
+  }
+
+  private static class Execution {
+    private final Attributes attributes;
+    private final Span span;
+    private final Map<Long, long[]> baselines = new ConcurrentHashMap<>();
+    private final AtomicLong cpuTime = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private volatile boolean measured;
+
+    Execution(Attributes attributes, Span span) {
+      this.attributes = attributes;
+      this.span = span;
+    }
+
+    Usage getUsage() {
+      long cpu = cpuTime.get();
+      long allocated = allocatedBytes.get();
+      for (Map.Entry<Long, long[]> entry : baselines.entrySet()) {
+        cpu += Math.max(0, getCpuTime(entry.getKey()) - entry.getValue()[0]);
+        allocated += Math.max(0, getAllocatedBytes(entry.getKey()) - entry.getValue()[1]);
+      }
+      return new Usage(cpu, allocated);
+    }
+  }
+
+  private final Map<String, Execution> executions = new ConcurrentHashMap<>();
+  private final Map<Attributes, Usage> finished = new ConcurrentHashMap<>();
+  private ObservableDoubleMeasurement cpuTime;
+  private ObservableLongMeasurement allocatedBytes;
+  private volatile boolean enabled;
+  private long gcEventThreshold;
+
+  private static long getCpuTime(long threadId) {
+    if (threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled()) {
+      return Math.max(0, threads.getThreadCpuTime(threadId));
+    }
+    return 0;
+  }
+
+  private static long getAllocatedBytes(long threadId) {
+    if (threads instanceof com.sun.management.ThreadMXBean sunThreads
+        && sunThreads.isThreadAllocatedMemorySupported()
+        && sunThreads.isThreadAllocatedMemoryEnabled()) {
+      return Math.max(0, sunThreads.getThreadAllocatedBytes(threadId));
+    }
+    return 0;
+  }
+
+  /** Publish the usage of the running executions, nothing is monitored before. */
+  public void bind(MeterProvider meterProvider) {
+    Meter meter = meterProvider.get(INSTRUMENTATION_RUNTIME_SCOPE);
+    cpuTime =
+        meter
+            .counterBuilder("execution.cpu.time")
+            .ofDoubles()
+            .setDescription("The CPU time used by the threads of a running execution.")
+            .setUnit("s")
+            .buildObserver();
+    allocatedBytes =
+        meter
+            .counterBuilder("execution.memory.allocated")
+            .setDescription("The bytes allocated by the threads of a running execution.")
+            .setUnit("By")
+            .buildObserver();
+    meter.batchCallback(this::observe, cpuTime, allocatedBytes);
+    enabled = true;
+  }
+
+  private void observe() {
+    // Concurrent executions of a workflow or pipeline share the same attributes
+    Map<Attributes, Usage> usages = new HashMap<>(finished);
+    for (Execution execution : executions.values()) {
+      if (execution.measured) {
+        usages.merge(execution.attributes, execution.getUsage(), Usage::add);
+      }
+    }
+    for (Map.Entry<Attributes, Usage> entry : usages.entrySet()) {
+      cpuTime.record(entry.getValue().cpuTime() / 1e9, entry.getKey());
+      allocatedBytes.record(entry.getValue().allocatedBytes(), entry.getKey());
+    }
+  }
+
+  /**
+   * Add a garbage collection event to the spans of the running executions for each pause longer
+   * than a threshold.
+   */
+  public void listenGarbageCollections(long thresholdMillis) {
+    this.gcEventThreshold = thresholdMillis;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter emitter) {
+        emitter.addNotificationListener(this, null, null);
+      }
+    }
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (executions.isEmpty()
+        || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+            notification.getType())) {
+      return;
+    }
+
+    GarbageCollectionNotificationInfo info =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    long duration = info.getGcInfo().getDuration();
+    if (duration < gcEventThreshold) {
+      return;
+    }
+
+    Attributes attributes =
+        Attributes.builder()
+            .put(JvmAttributes.JVM_GC_NAME, info.getGcName())
+            .put(JvmAttributes.JVM_GC_ACTION, info.getGcAction())
+            .put(GC_CAUSE, info.getGcCause())
+            .put(GC_DURATION, duration)
+            .build();
+    for (Execution execution : executions.values()) {
+      if (execution.span != null && execution.span.isRecording()) {
+        execution.span.addEvent(
+            "GC pause", attributes, notification.getTimeStamp(), TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /** Check if the monitor is bound, executions are not monitored otherwise. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Start monitoring an execution.
+   *
+   * @param executionId the log channel id of the execution
+   * @param attributes the attributes of the metrics of the execution
+   * @param span the span of the execution, or null if not traced
+   */
+  public void register(String executionId, Attributes attributes, Span span) {
+    if (!enabled) {
+      return;
+    }
+    executions.put(executionId, new Execution(attributes, span));
+  }
+
+  /** Measure a thread of an execution, from now on. */
+  public void addThread(String executionId, long threadId) {
+    Execution execution = executions.get(executionId);
+    if (execution != null) {
+      execution.baselines.put(
+          threadId, new long[] {getCpuTime(threadId), getAllocatedBytes(threadId)});
+      execution.measured = true;
+    }
+  }
+
+  /** Stop measuring a thread of an execution, its usage is accumulated. */
+  public void removeThread(String executionId, long threadId) {
+    Execution execution = executions.get(executionId);
+    if (execution != null) {
+      long[] baseline = execution.baselines.remove(threadId);
+      if (baseline != null) {
+        execution.cpuTime.addAndGet(Math.max(0, getCpuTime(threadId) - baseline[0]));
+        execution.allocatedBytes.addAndGet(
+            Math.max(0, getAllocatedBytes(threadId) - baseline[1]));
+      }
+    }
+  }
+
+  /**
+   * Stop monitoring an execution.
+   *
+   * @return the usage of the execution, or null if none of its threads was measured
+   */
+  public Usage unregister(String executionId) {
+    Execution execution = executions.remove(executionId);
+    if (execution == null || !execution.measured) {
+      return null;
+    }
+    Usage usage = execution.getUsage();
+    finished.merge(execution.attributes, usage, Usage::add);
+    return usage;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.time.Duration;
+import java.util.List;
+import org.apache.hop.core.variables.IVariables;
+
+/**
+ * Decide which workflow and pipeline executions are traced.
+ *
+ * <p>An execution with a parent follows the decision of its parent. A root execution is sampled
+ * on the ratio of its trace id, like the SDK trace id ratio sampler, with the ratio of the first
+ * matching rule, or else with the default ratio. The decision is deterministic per trace id and
+ * consistent with the samplers of the other services of the trace. The sampler is registered in
+ * the SDK, parent based, and decides when the span of a root execution is started: a dropped root
+ * execution only costs a span builder. A child of a dropped execution, or a root execution with a
+ * ratio of zero, does not build any span.
+ *
+ * <p>A root execution not sampled but ending in error or too slow is kept after the fact with a
+ * single span, having the <code>hop.sampling.reason</code> attribute and no children: the spans of
+ * its transforms, actions and child executions were never built.
+ *
+ * <p>The child executions launched by a transform, usually one per row, are also limited: only the
+ * first ones are traced, and then one out of every 1/ratio, the same ones at every run.
+ */
+public class ExecutionSampler implements Sampler {
+
+  public static final String REASON_ERROR = "error";
+  public static final String REASON_SLOW = "slow";
+
+  private final double ratio;
+  private final Sampler ratioSampler;
+  private final int childLimit;
+  private final double childRatio;
+  private final List<SamplingRule> rules;
+  private final List<Sampler> ruleSamplers;
+  private final boolean keepErrors;
+  private final Duration slowThreshold;
+
+  public ExecutionSampler(OpenTelemetryConfig config) {
+    this.ratio = config.getSamplingRatio();
+    this.ratioSampler = Sampler.traceIdRatioBased(ratio);
+    this.rules = List.copyOf(config.getSamplingRules());
+    this.ruleSamplers =
+        rules.stream().map(rule -> Sampler.traceIdRatioBased(rule.getRatio())).toList();
+    this.keepErrors = config.isSamplingKeepErrors();
+    this.slowThreshold = config.getSamplingSlowThreshold();
+    this.childLimit = config.getChildTraceLimit();
+    this.childRatio = config.getChildSamplingRatio();
+  }
+
+  /**
+   * Decide if the span of an execution is built.
+   *
+   * @param parent the context of the execution
+   * @param name the name of the workflow or pipeline
+   * @param variables the variables of the execution
+   * @param runConfiguration the name of the run configuration
+   * @return the decision of the parent, or for a root execution true unless its ratio is zero, its
+   *     span then being sampled on its trace id when started
+   */
+  public boolean shouldSample(
+      Context parent, String name, IVariables variables, String runConfiguration) {
+    SpanContext parentSpanContext = Span.fromContext(parent).getSpanContext();
+    if (parentSpanContext.isValid()) {
+      return parentSpanContext.isSampled();
+    }
+
+    String project = variables.getVariable(ExecutionTelemetry.VARIABLE_HOP_PROJECT_NAME);
+    return getRatio(name, project, runConfiguration) > 0;
+  }
+
+  /** Sample the span of a root execution on its trace id, with the ratio of its rule. */
+  @Override
+  public SamplingResult shouldSample(
+      Context parentContext,
+      String traceId,
+      String name,
+      SpanKind spanKind,
+      Attributes attributes,
+      List<LinkData> parentLinks) {
+
+    // Executions kept after the fact, whatever the ratio
+    if (attributes.get(HopAttributes.SAMPLING_REASON) != null) {
+      return SamplingResult.recordAndSample();
+    }
+
+    String runConfiguration = attributes.get(HopAttributes.PIPELINE_RUN_CONFIGURATION);
+    if (runConfiguration == null) {
+      runConfiguration = attributes.get(HopAttributes.WORKFLOW_RUN_CONFIGURATION);
+    }
+    return getSampler(name, attributes.get(HopAttributes.HOP_PROJECT), runConfiguration)
+        .shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+  }
+
+  @Override
+  public String getDescription() {
+    return "ExecutionSampler{ratio=" + ratio + ", rules=" + rules.size() + "}";
+  }
+
+  /** Gets the ratio of the first matching rule, or else the default ratio. */
+  protected double getRatio(String name, String project, String runConfiguration) {
+    for (SamplingRule rule : rules) {
+      if (rule.matches(name, project, runConfiguration)) {
+        return rule.getRatio();
+      }
+    }
+    return ratio;
+  }
+
+  private Sampler getSampler(String name, String project, String runConfiguration) {
+    for (int i = 0; i < rules.size(); i++) {
+      if (rules.get(i).matches(name, project, runConfiguration)) {
+        return ruleSamplers.get(i);
+      }
+    }
+    return ratioSampler;
+  }
+
+  /** Create the aggregate of the child executions of a transform, or null if not limited. */
+  public ExecutionAggregate createChildAggregate() {
+    return childLimit > 0 ? new ExecutionAggregate(childLimit) : null;
+  }
+
+  /**
+   * Decide if a child execution launched by a transform is traced, its parent being sampled.
+   *
+   * @param children the aggregate of the child executions of the transform
+   * @return true if the execution is among the first ones or one out of every 1/ratio next ones
+   */
+  public boolean shouldSampleChild(ExecutionAggregate children) {
+    long beyond = children.nextExecution() - childLimit;
+    if (beyond <= 0) {
+      return true;
+    }
+    if (childRatio <= 0) {
+      return false;
+    }
+    return beyond % Math.max(1, Math.round(1 / childRatio)) == 0;
+  }
+
+  /**
+   * Create a non-recording span propagating to the children the decision not to sample an
+   * execution.
+   */
+  public Span createUnsampledSpan(Context parent) {
+    SpanContext parentSpanContext = Span.fromContext(parent).getSpanContext();
+    IdGenerator generator = IdGenerator.random();
+    String traceId =
+        parentSpanContext.isValid()
+            ? parentSpanContext.getTraceId()
+            : generator.generateTraceId();
+
+    return Span.wrap(
+        SpanContext.create(
+            traceId, generator.generateSpanId(), TraceFlags.getDefault(), TraceState.getDefault()));
+  }
+
+  /**
+   * Get the reason to keep a root execution that was not sampled.
+   *
+   * @param error true if the execution ended in error
+   * @param duration the duration of the execution
+   * @return the reason, or null to drop the execution
+   */
+  public String getKeepReason(boolean error, Duration duration) {
+    if (keepErrors && error) {
+      return REASON_ERROR;
+    }
+    if (!slowThreshold.isZero() && duration != null && duration.compareTo(slowThreshold) > 0) {
+      return REASON_SLOW;
+    }
+    return null;
+  }
+
+  /**
+   * Get the reason to keep a child execution of a transform dropped beyond the limit.
+   *
+   * @param error true if the execution ended in error
+   * @return the reason, or null to drop the execution
+   */
+  public String getChildKeepReason(boolean error) {
+    return error ? REASON_ERROR : null;
+  }
+}
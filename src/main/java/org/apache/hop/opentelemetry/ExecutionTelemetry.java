@@ -17,22 +17,159 @@
 
 package org.apache.hop.opentelemetry;
 
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.semconv.OtelAttributes;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import org.apache.hop.core.IExtensionData;
 import org.apache.hop.core.logging.ILoggingObject;
 import org.apache.hop.core.util.Utils;
 import org.apache.hop.core.variables.IVariables;
+import org.apache.hop.execution.ExecutionType;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
 import org.apache.hop.pipeline.transform.ITransform;
+import org.apache.hop.pipeline.transform.TransformMeta;
 import org.apache.hop.workflow.action.IAction;
+import org.apache.hop.workflow.engine.IWorkflowEngine;
 
 public class ExecutionTelemetry {
 
   public static final String VARIABLE_HOP_PROJECT_NAME = "HOP_PROJECT_NAME";
   public static final String VARIABLE_HOP_ENVIRONMENT_NAME = "HOP_ENVIRONMENT_NAME";
 
+  /** Variables carrying the W3C trace context and baggage between processes. */
+  public static final String VARIABLE_TRACEPARENT = "TRACEPARENT";
+
+  public static final String VARIABLE_TRACESTATE = "TRACESTATE";
+  public static final String VARIABLE_BAGGAGE = "BAGGAGE";
+
   public static final String SPAN = "opentelemetry.span";
 
+  /** Spans of the transforms traced in real time, by engine component. */
+  public static final String TRANSFORM_SPANS = "opentelemetry.transform.spans";
+
+  /** Sampler of the row sets of a running pipeline. */
+  public static final String ROWSET_SAMPLER = "opentelemetry.rowset.sampler";
+
+  /** Start time of an action in nanoseconds, to record its duration. */
+  public static final String ACTION_START = "opentelemetry.action.start";
+
+  /** Aggregate of the repeated executions of an action, when the current one is folded. */
+  public static final String ACTION_AGGREGATE = "opentelemetry.action.aggregate";
+
+  /** Aggregate of the child executions launched by a transform, usually one per row. */
+  public static final String CHILD_AGGREGATE = "opentelemetry.child.aggregate";
+
+  /** CPU time of a transform copy in nanoseconds, when transform resources are measured. */
+  public static final String CPU_TIME = "opentelemetry.cpu.time";
+
+  public static final String STATUS_OK = "ok";
+  public static final String STATUS_ERROR = "error";
+
+  /**
+   * Read the trace context from the variables of an execution, else from the system properties,
+   * else from the environment.
+   */
+  private static final TextMapGetter<IVariables> VARIABLES_GETTER =
+      new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(IVariables variables) {
+          return List.of("traceparent", "tracestate", "baggage");
+        }
+
+        @Override
+        public String get(IVariables variables, String key) {
+          if (variables == null) {
+            return null;
+          }
+          String name = key.toUpperCase(Locale.ROOT);
+          String value = variables.getVariable(name);
+          if (Utils.isEmpty(value)) {
+            value = System.getProperty(name);
+          }
+          if (Utils.isEmpty(value)) {
+            value = System.getenv(name);
+          }
+          return Utils.isEmpty(value) ? null : value;
+        }
+      };
+
+  /** The instruments are created on first use, once the SDK is registered. */
+  private volatile boolean instrumented;
+
+  /**
+   * Check that telemetry is enabled and the SDK initialized in the background is registered, and
+   * create the instruments on first use.
+   *
+   * <p>A top-level execution starting before the SDK is ready, typically the one of a hop-run,
+   * waits for it at most {@link OpenTelemetryPlugin#READY_TIMEOUT}, child executions never wait.
+   * Nothing touches {@link GlobalOpenTelemetry} before the SDK is registered, otherwise the global
+   * instance would be set to a no-op for the whole process.
+   *
+   * @param execution the workflow or pipeline
+   * @return false if the execution must not be observed
+   */
+  protected boolean isTelemetryReady(ILoggingObject execution) {
+    OpenTelemetryPlugin plugin = OpenTelemetryPlugin.getInstance();
+    if (!plugin.isReady() && plugin.isEnabled() && isTopLevel(execution)) {
+      try {
+        plugin.awaitReady(OpenTelemetryPlugin.READY_TIMEOUT);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return isTelemetryReady();
+  }
+
+  /**
+   * Check that telemetry is enabled and the SDK is registered, without waiting for it, and create
+   * the instruments on first use.
+   *
+   * @return false if the execution must not be observed
+   */
+  protected boolean isTelemetryReady() {
+    if (!OpenTelemetryPlugin.getInstance().isReady()) {
+      return false;
+    }
+    if (!instrumented) {
+      synchronized (this) {
+        if (!instrumented) {
+          createInstruments();
+          instrumented = true;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Create the instruments of the extension point. */
+  protected void createInstruments() {
+    // No instruments by default
+  }
+
+  /**
+   * Gets the context of an execution, with the span of its parent execution.
+   *
+   * <p>The parent span is found in memory when the parent runs in the same JVM. Otherwise the
+   * context is extracted from the TRACEPARENT, TRACESTATE and BAGGAGE variables, set by a parent
+   * execution on another Hop Server, or by a scheduler launching hop-run.
+   */
   public Context getContext(ILoggingObject object) {
     Context context = Context.current();
 
@@ -55,19 +192,263 @@ public class ExecutionTelemetry {
 
     if (span != null) {
       context = context.with(span);
+    } else if (object instanceof IVariables variables) {
+      context = extractContext(context, variables);
     }
 
     return context;
   }
 
+  /**
+   * Gets the aggregate of the child executions launched by the parent transform of an execution,
+   * created with the first child.
+   *
+   * @return the aggregate, or null if the parent is not a transform or children are not limited
+   */
+  protected ExecutionAggregate getChildAggregate(ILoggingObject object) {
+    if (!(object.getParent() instanceof ITransform transform)
+        || !(transform instanceof IExtensionData extension)) {
+      return null;
+    }
+
+    // Copies of a transform share nothing, but stay on the safe side with concurrent children
+    synchronized (extension) {
+      Map<String, Object> dataMap = extension.getExtensionDataMap();
+      ExecutionAggregate children = (ExecutionAggregate) dataMap.get(CHILD_AGGREGATE);
+      if (children == null) {
+        children = OpenTelemetryPlugin.getInstance().getSampler().createChildAggregate();
+        if (children != null) {
+          dataMap.put(CHILD_AGGREGATE, children);
+        }
+      }
+      return children;
+    }
+  }
+
+  /**
+   * Gets the aggregate of the executions of the parent action of an execution, when the current
+   * execution of the action is folded in its summary span. The child execution is then folded as
+   * well, and accounted for by the action recording its own execution in the aggregate.
+   *
+   * @return the aggregate, or null if the parent is not an action or the action is traced
+   */
+  protected static ExecutionAggregate getActionAggregate(ILoggingObject object) {
+    if (object.getParent() instanceof IAction action) {
+      return (ExecutionAggregate) action.getExtensionDataMap().get(ACTION_AGGREGATE);
+    }
+    return null;
+  }
+
+  /**
+   * Check if an execution is top-level in this process: it has no parent pipeline, workflow,
+   * transform or action, even if it continues a trace received from another process.
+   */
+  protected static boolean isTopLevel(ILoggingObject object) {
+    ILoggingObject parent = object.getParent();
+    return !(parent instanceof IPipelineEngine
+        || parent instanceof IWorkflowEngine
+        || parent instanceof ITransform
+        || parent instanceof IAction);
+  }
+
+  /**
+   * Gets the aggregate of the child executions launched by a transform, also kept in the snapshot
+   * of the component when the telemetry is recorded after the execution.
+   *
+   * @return the aggregate, or null if the component launched no limited child execution
+   */
+  protected static ExecutionAggregate getChildSummary(IEngineComponent component) {
+    if (component instanceof ComponentSnapshot snapshot) {
+      return snapshot.getChildAggregate();
+    }
+    if (component instanceof IExtensionData extension
+        && extension.getExtensionDataMap().get(CHILD_AGGREGATE)
+            instanceof ExecutionAggregate children) {
+      return children;
+    }
+    return null;
+  }
+
+  /**
+   * Gets the CPU time of the thread of a transform copy, also kept in the snapshot of the
+   * component.
+   *
+   * @return the CPU time in nanoseconds, or -1 if not measured
+   */
+  protected static long getCpuTime(IEngineComponent component) {
+    if (component instanceof ComponentSnapshot snapshot) {
+      return snapshot.getCpuTime();
+    }
+    if (component instanceof IExtensionData extension
+        && extension.getExtensionDataMap().get(CPU_TIME) instanceof Long cpuTime) {
+      return cpuTime;
+    }
+    return -1;
+  }
+
+  /** Extract the W3C trace context and baggage from the variables of an execution. */
+  protected static Context extractContext(Context context, IVariables variables) {
+    return GlobalOpenTelemetry.getPropagators()
+        .getTextMapPropagator()
+        .extract(context, variables, VARIABLES_GETTER);
+  }
+
+  /**
+   * Inject the W3C trace context and baggage into the variables of an execution, so they are
+   * inherited by its child executions, including the ones sent to a remote Hop Server.
+   */
+  protected static void injectContext(Context context, IVariables variables) {
+    GlobalOpenTelemetry.getPropagators()
+        .getTextMapPropagator()
+        .inject(
+            context,
+            variables,
+            (carrier, key, value) -> carrier.setVariable(key.toUpperCase(Locale.ROOT), value));
+  }
+
+  /**
+   * Start the span of a transform or of any other pipeline engine component.
+   *
+   * @param tracer the transform tracer
+   * @param context the context with the pipeline span
+   * @param component the engine component
+   * @param start the start timestamp, or null to start the span now
+   */
+  protected Span startTransformSpan(
+      Tracer tracer, Context context, IEngineComponent component, Instant start) {
+    SpanBuilder builder =
+        tracer
+            .spanBuilder(component.getName())
+            .setSpanKind(SpanKind.SERVER)
+            .setParent(context)
+            .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Transform.name())
+            .setAttribute(HopAttributes.TRANSFORM_PLUGIN_ID, getTransformPluginId(null, component))
+            .setAttribute(HopAttributes.TRANSFORM_COPY, component.getCopyNr());
+
+    if (start != null) {
+      builder.setStartTimestamp(start);
+    }
+
+    return builder.startSpan();
+  }
+
+  /**
+   * Set the status of the span of a transform and end it.
+   *
+   * @param span the transform span
+   * @param component the engine component
+   * @param end the end timestamp, or null to end the span now
+   */
+  protected void endTransformSpan(Span span, IEngineComponent component, Instant end) {
+    span.setAllAttributes(getTransformMetrics(component));
+
+    // Summary of the child executions launched by the transform
+    ExecutionAggregate children = getChildSummary(component);
+    if (children != null) {
+      span.setAllAttributes(children.getAttributes());
+    }
+    span.setStatus(component.getErrors() > 0 ? StatusCode.ERROR : StatusCode.OK);
+
+    if (end != null) {
+      span.end(end);
+    } else {
+      span.end();
+    }
+  }
+
+  /**
+   * Create a histogram of execution durations in seconds.
+   *
+   * <p>Durations are aggregated in base-2 exponential buckets by default, see {@link
+   * OpenTelemetryPlugin#createMeterProvider}.
+   */
+  protected DoubleHistogram createDurationHistogram(
+      String scope, String name, String description) {
+    return GlobalOpenTelemetry.getMeter(scope)
+        .histogramBuilder(name)
+        .setDescription(description)
+        .setUnit("s")
+        .build();
+  }
+
+  /** Gets the duration in seconds between the start and the end of an execution, or now. */
+  protected double getDuration(Date start, Date end) {
+    if (start == null) {
+      return 0;
+    }
+    long endTime = end != null ? end.getTime() : System.currentTimeMillis();
+    return Math.max(0, endTime - start.getTime()) / 1000d;
+  }
+
+  /** Add the resources used by the threads of an execution to its span. */
+  protected void addResourceUsage(Span span, ExecutionResourceMonitor.Usage usage) {
+    if (usage != null) {
+      span.setAttribute(HopAttributes.EXECUTION_CPU_TIME, usage.cpuTime() / 1_000_000);
+      span.setAttribute(HopAttributes.EXECUTION_ALLOCATED_BYTES, usage.allocatedBytes());
+    }
+  }
+
+  protected String getStatus(boolean error) {
+    return error ? STATUS_ERROR : STATUS_OK;
+  }
+
+  /**
+   * Gets the plugin id of a component, found in the pipeline metadata for remote engines.
+   *
+   * @param pipelineMeta the metadata of the pipeline, or null to only look at the component
+   * @param component the engine component
+   */
+  protected static String getTransformPluginId(
+      PipelineMeta pipelineMeta, IEngineComponent component) {
+    if (component instanceof ITransform transform) {
+      return transform.getTransformPluginId();
+    }
+    if (component instanceof ComponentSnapshot snapshot) {
+      return snapshot.getTransformPluginId();
+    }
+    if (pipelineMeta == null) {
+      return null;
+    }
+    TransformMeta transformMeta = pipelineMeta.findTransform(component.getName());
+    return transformMeta != null ? transformMeta.getTransformPluginId() : null;
+  }
+
+  /** Gets the greater of the rows read and written by a component, including physical I/O. */
+  protected static long getRows(IEngineComponent component) {
+    return Math.max(
+        component.getLinesRead() + component.getLinesInput(),
+        component.getLinesWritten() + component.getLinesOutput());
+  }
+
+  /** Gets the row counters and the status of a component, as reported by any engine. */
+  protected static Attributes getTransformMetrics(IEngineComponent component) {
+    return Attributes.builder()
+        .put(HopAttributes.TRANSFORM_ROWS_READ, component.getLinesRead())
+        .put(HopAttributes.TRANSFORM_ROWS_WRITTEN, component.getLinesWritten())
+        .put(HopAttributes.TRANSFORM_ROWS_INPUT, component.getLinesInput())
+        .put(HopAttributes.TRANSFORM_ROWS_OUTPUT, component.getLinesOutput())
+        .put(HopAttributes.TRANSFORM_ROWS_UPDATED, component.getLinesUpdated())
+        .put(HopAttributes.TRANSFORM_ROWS_REJECTED, component.getLinesRejected())
+        .put(HopAttributes.TRANSFORM_ERRORS, component.getErrors())
+        .put(HopAttributes.TRANSFORM_STATUS, component.getStatusDescription())
+        .build();
+  }
+
   public void addProjectAndEnvironment(IVariables variables, Span span) {
+    span.setAllAttributes(getProjectAndEnvironment(variables));
+  }
+
+  /** Gets the project and environment of an execution, known to the sampler of root spans. */
+  protected static Attributes getProjectAndEnvironment(IVariables variables) {
+    AttributesBuilder attributes = Attributes.builder();
     String project = variables.getVariable(VARIABLE_HOP_PROJECT_NAME);
     if (!Utils.isEmpty(project)) {
-      span.setAttribute(HopAttributes.HOP_PROJECT, project);
+      attributes.put(HopAttributes.HOP_PROJECT, project);
     }
     String environment = variables.getVariable(VARIABLE_HOP_ENVIRONMENT_NAME);
     if (!Utils.isEmpty(environment)) {
-      span.setAttribute(HopAttributes.HOP_ENVIRONMENT, environment);
+      attributes.put(HopAttributes.HOP_ENVIRONMENT, environment);
     }
+    return attributes.build();
   }
 }
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static io.opentelemetry.api.common.AttributeKey.booleanKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.export.MemoryMode;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Self-telemetry of the exporters: number of items exported or failed and export latency.
+ *
+ * <p>Queue size and items dropped by the batch processors are published by the SDK processors
+ * themselves (<code>queueSize</code>, <code>processedSpans</code> and <code>processedLogs</code>).
+ * The items are also totaled in memory, to report at shutdown how much each target exported
+ * compared to the spans and log records produced.
+ */
+public class ExporterMetrics {
+
+  public static final String INSTRUMENTATION_EXPORTER_SCOPE = "Exporter";
+
+  public static final AttributeKey<String> SIGNAL = stringKey("signal");
+  public static final AttributeKey<Boolean> SUCCESS = booleanKey("success");
+  public static final AttributeKey<String> TARGET = stringKey("target");
+
+  public static final String SIGNAL_TRACES = "traces";
+  public static final String SIGNAL_METRICS = "metrics";
+  public static final String SIGNAL_LOGS = "logs";
+
+  private volatile Meter meter;
+  private volatile LongCounter exported;
+  private volatile DoubleHistogram duration;
+  private volatile DoubleHistogram flushDuration;
+
+  private final Map<String, LongAdder> totals = new ConcurrentHashMap<>();
+  private final LongAdder endedSpans = new LongAdder();
+  private final LongAdder emittedLogRecords = new LongAdder();
+
+  /** Create the instruments, nothing is recorded before. */
+  public void bind(MeterProvider meterProvider) {
+    meter = meterProvider.get(INSTRUMENTATION_EXPORTER_SCOPE);
+    exported =
+        meter
+            .counterBuilder("exporter.items")
+            .setDescription("The number of spans, metric points or log records exported.")
+            .setUnit("{item}")
+            .build();
+    duration =
+        meter
+            .histogramBuilder("exporter.duration")
+            .setDescription("The duration of an export batch.")
+            .setUnit("s")
+            .build();
+    flushDuration =
+        meter
+            .histogramBuilder("exporter.flush.duration")
+            .setDescription("The duration of the flushes after a top-level execution.")
+            .setUnit("s")
+            .build();
+  }
+
+  /** Observe the size and the evictions of the disk buffer of failed exports. */
+  public void observe(DiskBuffer buffer) {
+    if (meter == null) {
+      return;
+    }
+    meter
+        .gaugeBuilder("exporter.buffer.size")
+        .ofLongs()
+        .setDescription("The size of the disk buffer of failed exports.")
+        .setUnit("By")
+        .buildWithCallback(measurement -> measurement.record(buffer.getSize()));
+    meter
+        .counterBuilder("exporter.buffer.evicted")
+        .setDescription("The number of export requests evicted from the full disk buffer.")
+        .setUnit("{request}")
+        .buildWithCallback(measurement -> measurement.record(buffer.getEvicted()));
+  }
+
+  protected CompletableResultCode record(
+      String signal, String target, int count, Supplier<CompletableResultCode> export) {
+    long start = System.nanoTime();
+    CompletableResultCode result = export.get();
+    result.whenComplete(
+        () -> {
+          totals
+              .computeIfAbsent(key(target, signal, result.isSuccess()), k -> new LongAdder())
+              .add(count);
+
+          LongCounter counter = exported;
+          DoubleHistogram histogram = duration;
+          if (counter == null || histogram == null) {
+            return;
+          }
+          Attributes attributes =
+              Attributes.of(SIGNAL, signal, TARGET, target, SUCCESS, result.isSuccess());
+          counter.add(count, attributes);
+          histogram.record((System.nanoTime() - start) / 1e9, attributes);
+        });
+    return result;
+  }
+
+  /** Record the duration of a flush, from the request to the end of the exports. */
+  public void recordFlush(long start, boolean success) {
+    DoubleHistogram histogram = flushDuration;
+    if (histogram != null) {
+      histogram.record((System.nanoTime() - start) / 1e9, Attributes.of(SUCCESS, success));
+    }
+  }
+
+  private static String key(String target, String signal, boolean success) {
+    return target + '|' + signal + '|' + success;
+  }
+
+  /** Gets the number of items of a signal exported by a target, or failed. */
+  public long getExported(String target, String signal, boolean success) {
+    LongAdder total = totals.get(key(target, signal, success));
+    return total != null ? total.sum() : 0;
+  }
+
+  /** Gets the number of sampled spans ended, handed over to the batch processors. */
+  public long getEndedSpans() {
+    return endedSpans.sum();
+  }
+
+  /** Gets the number of log records emitted, handed over to the batch processors. */
+  public long getEmittedLogRecords() {
+    return emittedLogRecords.sum();
+  }
+
+  /** A span processor counting the sampled spans ended. */
+  public SpanProcessor countSpans() {
+    return new SpanProcessor() {
+      @Override
+      public void onStart(Context parentContext, ReadWriteSpan span) {
+        // Nothing to count
+      }
+
+      @Override
+      public boolean isStartRequired() {
+        return false;
+      }
+
+      @Override
+      public void onEnd(ReadableSpan span) {
+        if (span.getSpanContext().isSampled()) {
+          endedSpans.increment();
+        }
+      }
+
+      @Override
+      public boolean isEndRequired() {
+        return true;
+      }
+    };
+  }
+
+  /** A log record processor counting the log records emitted. */
+  public LogRecordProcessor countLogRecords() {
+    return (context, logRecord) -> emittedLogRecords.increment();
+  }
+
+  /**
+   * Meter the exports of a span exporter.
+   *
+   * @param exporter the exporter
+   * @param target the name of the exporter target
+   */
+  public SpanExporter wrap(SpanExporter exporter, String target) {
+    return new MeteredSpanExporter(exporter, target);
+  }
+
+  public MetricExporter wrap(MetricExporter exporter, String target) {
+    return new MeteredMetricExporter(exporter, target);
+  }
+
+  public LogRecordExporter wrap(LogRecordExporter exporter, String target) {
+    return new MeteredLogRecordExporter(exporter, target);
+  }
+
+  private class MeteredSpanExporter implements SpanExporter {
+    private final SpanExporter delegate;
+    private final String target;
+
+    MeteredSpanExporter(SpanExporter delegate, String target) {
+      this.delegate = delegate;
+      this.target = target;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      return record(SIGNAL_TRACES, target, spans.size(), () -> delegate.export(spans));
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+
+  private class MeteredMetricExporter implements MetricExporter {
+    private final MetricExporter delegate;
+    private final String target;
+
+    MeteredMetricExporter(MetricExporter delegate, String target) {
+      this.delegate = delegate;
+      this.target = target;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<MetricData> metrics) {
+      int count = 0;
+      for (MetricData metric : metrics) {
+        count += metric.getData().getPoints().size();
+      }
+      return record(SIGNAL_METRICS, target, count, () -> delegate.export(metrics));
+    }
+
+    @Override
+    public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+      return delegate.getAggregationTemporality(instrumentType);
+    }
+
+    @Override
+    public Aggregation getDefaultAggregation(InstrumentType instrumentType) {
+      return delegate.getDefaultAggregation(instrumentType);
+    }
+
+    @Override
+    public MemoryMode getMemoryMode() {
+      return delegate.getMemoryMode();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+
+  private class MeteredLogRecordExporter implements LogRecordExporter {
+    private final LogRecordExporter delegate;
+    private final String target;
+
+    MeteredLogRecordExporter(LogRecordExporter delegate, String target) {
+      this.delegate = delegate;
+      this.target = target;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<LogRecordData> logs) {
+      return record(SIGNAL_LOGS, target, logs.size(), () -> delegate.export(logs));
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hop.core.Const;
+
+/**
+ * An additional backend receiving some signals, with its own exporters and batch processors.
+ *
+ * <p>The text form of a target is <code>name|signals|protocol|endpoint|timeout|headers</code> where
+ * signals is a comma separated list of <code>traces</code>, <code>metrics</code> and <code>logs
+ * </code>, the timeout is in seconds and headers are <code>key=value</code> pairs separated by
+ * commas. Targets are separated by semicolons, i.e.: <code>
+ * vendor|traces,metrics|http/protobuf|https://otlp.vendor.com|10|api-key=secret</code>.
+ */
+public class ExporterTarget {
+
+  /** Name of the target of the configured endpoint, receiving all signals. */
+  public static final String DEFAULT = "default";
+
+  public static final Set<String> ALL_SIGNALS =
+      Set.of(
+          ExporterMetrics.SIGNAL_TRACES,
+          ExporterMetrics.SIGNAL_METRICS,
+          ExporterMetrics.SIGNAL_LOGS);
+
+  private final String name;
+  private final Set<String> signals;
+  private final String protocol;
+  private final String endpoint;
+  private final Duration timeout;
+  private final Map<String, String> headers;
+
+  public ExporterTarget(
+      String name,
+      Set<String> signals,
+      String protocol,
+      String endpoint,
+      Duration timeout,
+      Map<String, String> headers) {
+    this.name = name;
+    this.signals = signals;
+    this.protocol = protocol;
+    this.endpoint = endpoint;
+    this.timeout = timeout;
+    this.headers = headers;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Set<String> getSignals() {
+    return signals;
+  }
+
+  public boolean hasSignal(String signal) {
+    return signals.contains(signal);
+  }
+
+  public String getProtocol() {
+    return protocol;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public String toString() {
+    return name
+        + '|'
+        + String.join(",", signals)
+        + '|'
+        + protocol
+        + '|'
+        + endpoint
+        + '|'
+        + timeout.getSeconds()
+        + '|'
+        + headers.entrySet().stream()
+            .map(entry -> entry.getKey() + '=' + entry.getValue())
+            .collect(Collectors.joining(","));
+  }
+
+  /**
+   * Parse targets from their text form, invalid targets are ignored, as well as the targets named
+   * {@value #DEFAULT}, reserved for the configured endpoint, or named like a previous target.
+   */
+  public static List<ExporterTarget> parse(String str) {
+    List<ExporterTarget> targets = new ArrayList<>();
+    if (StringUtils.isBlank(str)) {
+      return targets;
+    }
+
+    Set<String> names = new HashSet<>();
+    for (String target : str.split(";")) {
+      String[] fields = target.split("\\|", -1);
+      if (fields.length < 4 || StringUtils.isBlank(fields[3])) {
+        continue;
+      }
+
+      Set<String> signals = new LinkedHashSet<>();
+      for (String signal : fields[1].split(",")) {
+        signal = signal.trim().toLowerCase(Locale.ROOT);
+        if (ALL_SIGNALS.contains(signal)) {
+          signals.add(signal);
+        }
+      }
+
+      Map<String, String> headers = new LinkedHashMap<>();
+      if (fields.length > 5) {
+        for (String header : fields[5].split(",")) {
+          String[] pair = header.split("=", 2);
+          if (pair.length == 2) {
+            headers.put(pair[0].trim(), pair[1].trim());
+          }
+        }
+      }
+
+      // The name identifies the batch processors and exporter metrics of the target
+      String name = fields[0].trim();
+      if (StringUtils.isBlank(name)) {
+        int index = targets.size() + 1;
+        while (names.contains("target" + index)) {
+          index++;
+        }
+        name = "target" + index;
+      }
+      if (DEFAULT.equalsIgnoreCase(name) || !names.add(name)) {
+        continue;
+      }
+
+      targets.add(
+          new ExporterTarget(
+              name,
+              signals,
+              StringUtils.defaultIfBlank(fields[2].trim(), "grpc"),
+              fields[3].trim(),
+              Duration.ofSeconds(fields.length > 4 ? Const.toInt(fields[4].trim(), 10) : 10),
+              headers));
+    }
+
+    return targets;
+  }
+
+  /** Format targets to their text form. */
+  public static String toString(List<ExporterTarget> targets) {
+    return targets.stream().map(ExporterTarget::toString).collect(Collectors.joining(";"));
+  }
+}
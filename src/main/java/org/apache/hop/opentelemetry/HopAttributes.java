@@ -17,9 +17,16 @@
 
 package org.apache.hop.opentelemetry;
 
+import static io.opentelemetry.api.common.AttributeKey.booleanKey;
+import static io.opentelemetry.api.common.AttributeKey.doubleArrayKey;
+import static io.opentelemetry.api.common.AttributeKey.doubleKey;
+import static io.opentelemetry.api.common.AttributeKey.longArrayKey;
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringArrayKey;
 import static io.opentelemetry.api.common.AttributeKey.stringKey;
 
 import io.opentelemetry.api.common.AttributeKey;
+import java.util.List;
 
 public final class HopAttributes {
 
@@ -36,6 +43,26 @@ public final class HopAttributes {
   /** The name of the Hop environment. */
   public static final AttributeKey<String> HOP_ENVIRONMENT = stringKey("hop.environment");
 
+  /** The reason why an execution that was not sampled has been kept (error or slow). */
+  public static final AttributeKey<String> SAMPLING_REASON = stringKey("hop.sampling.reason");
+
+  /** The type of an execution, for example Pipeline or Workflow. */
+  public static final AttributeKey<String> EXECUTION_TYPE = stringKey("hop.execution.type");
+
+  /** The status of a finished execution (ok or error). */
+  public static final AttributeKey<String> EXECUTION_STATUS = stringKey("hop.execution.status");
+
+  /** The CPU time in milliseconds used by the threads of an execution. */
+  public static final AttributeKey<Long> EXECUTION_CPU_TIME = longKey("hop.execution.cpu_time");
+
+  /** The bytes allocated in the heap by the threads of an execution. */
+  public static final AttributeKey<Long> EXECUTION_ALLOCATED_BYTES =
+      longKey("hop.execution.allocated_bytes");
+
+  /** The subject of a log line, for example the name of the transform or action. */
+  public static final AttributeKey<String> LOG_SUBJECT = stringKey("hop.log.subject");
+
+  public static final AttributeKey<String> WORKFLOW_NAME = stringKey("hop.workflow.name");
   public static final AttributeKey<String> WORKFLOW_ENGINE = stringKey("hop.workflow.engine");
   public static final AttributeKey<String> WORKFLOW_RUN_CONFIGURATION =
       stringKey("hop.workflow.run_configuration");
@@ -48,6 +75,10 @@ public final class HopAttributes {
 
   public static final AttributeKey<String> ACTION_PLUGIN_ID = stringKey("hop.action.plugin_id");
 
+  /** True on the summary span of the repeated executions of an action. */
+  public static final AttributeKey<Boolean> ACTION_AGGREGATED = booleanKey("hop.action.aggregated");
+
+  public static final AttributeKey<String> PIPELINE_NAME = stringKey("hop.pipeline.name");
   public static final AttributeKey<String> PIPELINE_ENGINE = stringKey("hop.pipeline.engine");
   public static final AttributeKey<String> PIPELINE_RUN_CONFIGURATION =
       stringKey("hop.pipeline.run_configuration");
@@ -58,6 +89,110 @@ public final class HopAttributes {
   public static final AttributeKey<String> PIPELINE_FILE_PATH = stringKey("hop.pipeline.file.path");
   public static final AttributeKey<String> PIPELINE_VERSION = stringKey("hop.pipeline.version");
 
+  /** The transform with the highest busy ratio, limiting the throughput of the pipeline. */
+  public static final AttributeKey<String> PIPELINE_BOTTLENECK_TRANSFORM =
+      stringKey("hop.pipeline.bottleneck.transform");
+
+  /** The transforms of the path of the pipeline with the longest busy time. */
+  public static final AttributeKey<List<String>> PIPELINE_CRITICAL_PATH =
+      stringArrayKey("hop.pipeline.critical_path");
+
+  public static final AttributeKey<String> TRANSFORM_NAME = stringKey("hop.transform.name");
+  public static final AttributeKey<Long> TRANSFORM_COPY = longKey("hop.transform.copy");
   public static final AttributeKey<String> TRANSFORM_PLUGIN_ID =
       stringKey("hop.transform.plugin_id");
+
+  /** The rows and errors of a transform, as reported by the pipeline engine. */
+  public static final AttributeKey<Long> TRANSFORM_ROWS_READ = longKey("hop.transform.rows.read");
+
+  public static final AttributeKey<Long> TRANSFORM_ROWS_WRITTEN =
+      longKey("hop.transform.rows.written");
+  public static final AttributeKey<Long> TRANSFORM_ROWS_INPUT = longKey("hop.transform.rows.input");
+  public static final AttributeKey<Long> TRANSFORM_ROWS_OUTPUT =
+      longKey("hop.transform.rows.output");
+  public static final AttributeKey<Long> TRANSFORM_ROWS_UPDATED =
+      longKey("hop.transform.rows.updated");
+  public static final AttributeKey<Long> TRANSFORM_ROWS_REJECTED =
+      longKey("hop.transform.rows.rejected");
+  public static final AttributeKey<Long> TRANSFORM_ERRORS = longKey("hop.transform.errors");
+
+  /** The status of a transform reported by the pipeline engine, for example Finished. */
+  public static final AttributeKey<String> TRANSFORM_STATUS = stringKey("hop.transform.status");
+
+  /** The code of an engine metric, for example read or written. */
+  public static final AttributeKey<String> ENGINE_METRIC = stringKey("hop.engine.metric");
+
+  /** The number of copies of a transform. */
+  public static final AttributeKey<Long> TRANSFORM_COPIES = longKey("hop.transform.copies");
+
+  /** The total, least and most rows processed by the copies of a transform. */
+  public static final AttributeKey<Long> TRANSFORM_ROWS_SUM = longKey("hop.transform.rows.sum");
+
+  public static final AttributeKey<Long> TRANSFORM_ROWS_MIN = longKey("hop.transform.rows.min");
+  public static final AttributeKey<Long> TRANSFORM_ROWS_MAX = longKey("hop.transform.rows.max");
+
+  /** The ratio of the rows of the busiest copy of a transform to the average of its copies. */
+  public static final AttributeKey<Double> TRANSFORM_COPY_SKEW =
+      doubleKey("hop.transform.copy_skew");
+
+  /** The copy of a transform with the longest execution. */
+  public static final AttributeKey<Long> TRANSFORM_SLOWEST_COPY =
+      longKey("hop.transform.slowest_copy");
+
+  /** The CPU time in milliseconds used by the thread of a transform copy. */
+  public static final AttributeKey<Long> TRANSFORM_CPU_TIME = longKey("hop.transform.cpu_time");
+
+  /** The bytes allocated in the heap by the thread of a transform copy. */
+  public static final AttributeKey<Long> TRANSFORM_ALLOCATED_BYTES =
+      longKey("hop.transform.allocated_bytes");
+
+  /** The ratio of time a transform was neither waiting for input nor blocked on output. */
+  public static final AttributeKey<Double> TRANSFORM_BUSY_RATIO =
+      doubleKey("hop.transform.busy_ratio");
+
+  public static final AttributeKey<String> ROWSET_FROM = stringKey("hop.rowset.from");
+  public static final AttributeKey<Long> ROWSET_FROM_COPY = longKey("hop.rowset.from.copy");
+  public static final AttributeKey<String> ROWSET_TO = stringKey("hop.rowset.to");
+  public static final AttributeKey<Long> ROWSET_TO_COPY = longKey("hop.rowset.to.copy");
+  public static final AttributeKey<Long> ROWSET_CAPACITY = longKey("hop.rowset.capacity");
+  public static final AttributeKey<Double> ROWSET_FILL_AVERAGE =
+      doubleKey("hop.rowset.fill.average");
+  public static final AttributeKey<Long> ROWSET_FILL_MAX = longKey("hop.rowset.fill.max");
+
+  /** Estimated time in milliseconds the producer was blocked putting rows into a full row set. */
+  public static final AttributeKey<Long> ROWSET_BLOCKED_PUT = longKey("hop.rowset.blocked_put");
+
+  /** Estimated time in milliseconds the consumer waited getting rows from an empty row set. */
+  public static final AttributeKey<Long> ROWSET_BLOCKED_GET = longKey("hop.rowset.blocked_get");
+
+  /** The number of executions summarized, and how many ended in error. */
+  public static final AttributeKey<Long> AGGREGATE_COUNT = longKey("hop.aggregate.count");
+
+  public static final AttributeKey<Long> AGGREGATE_ERRORS = longKey("hop.aggregate.errors");
+
+  /** The total, least and most duration in seconds of the executions summarized. */
+  public static final AttributeKey<Double> AGGREGATE_DURATION_TOTAL =
+      doubleKey("hop.aggregate.duration.total");
+
+  public static final AttributeKey<Double> AGGREGATE_DURATION_MIN =
+      doubleKey("hop.aggregate.duration.min");
+  public static final AttributeKey<Double> AGGREGATE_DURATION_MAX =
+      doubleKey("hop.aggregate.duration.max");
+
+  /** The estimated percentiles in seconds of the durations of the executions summarized. */
+  public static final AttributeKey<Double> AGGREGATE_DURATION_P50 =
+      doubleKey("hop.aggregate.duration.p50");
+
+  public static final AttributeKey<Double> AGGREGATE_DURATION_P90 =
+      doubleKey("hop.aggregate.duration.p90");
+  public static final AttributeKey<Double> AGGREGATE_DURATION_P99 =
+      doubleKey("hop.aggregate.duration.p99");
+
+  /** The upper bounds in seconds of the buckets of the duration histogram of the executions. */
+  public static final AttributeKey<List<Double>> AGGREGATE_DURATION_BOUNDS =
+      doubleArrayKey("hop.aggregate.duration.bounds");
+
+  /** The number of executions of each bucket, the last one is above the greatest bound. */
+  public static final AttributeKey<List<Long>> AGGREGATE_DURATION_COUNTS =
+      longArrayKey("hop.aggregate.duration.counts");
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.context.Context;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.logging.HopLoggingEvent;
+import org.apache.hop.core.logging.IHopLoggingEventListener;
+import org.apache.hop.core.logging.ILoggingObject;
+import org.apache.hop.core.logging.LogLevel;
+import org.apache.hop.core.logging.LogMessage;
+import org.apache.hop.core.logging.LoggingRegistry;
+
+/**
+ * Stream Hop log events to OpenTelemetry log records as they are written.
+ *
+ * <p>Only the log channels of registered executions, and their children, are exported. Each line is
+ * emitted with the context of the execution span, so records are correlated with traces, and goes
+ * through the batch log record processor which bounds the memory used.
+ */
+public class LogRecordBridge implements IHopLoggingEventListener {
+
+  /** Maximum depth of logging object parents searched for a registered execution. */
+  private static final int MAX_DEPTH = 50;
+
+  private record Registration(Logger logger, Context context, Attributes attributes) {}
+
+  private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+  /**
+   * Start exporting the log lines of an execution and its children.
+   *
+   * @param logChannelId the log channel of the execution
+   * @param scope the instrumentation scope name of the records
+   * @param context the context with the execution span
+   * @param attributes the attributes added to each record
+   */
+  public void register(String logChannelId, String scope, Context context, Attributes attributes) {
+    Logger logger = GlobalOpenTelemetry.get().getLogsBridge().get(scope);
+    registrations.put(logChannelId, new Registration(logger, context, attributes));
+  }
+
+  /** Stop exporting the log lines of an execution. */
+  public void unregister(String logChannelId) {
+    registrations.remove(logChannelId);
+  }
+
+  @Override
+  public void eventAdded(HopLoggingEvent event) {
+    if (registrations.isEmpty() || !(event.getMessage() instanceof LogMessage message)) {
+      return;
+    }
+
+    Registration registration = find(message.getLogChannelId());
+    if (registration == null) {
+      return;
+    }
+
+    LogLevel level = message.getLevel();
+    registration
+        .logger()
+        .logRecordBuilder()
+        .setTimestamp(event.getTimeStamp(), TimeUnit.MILLISECONDS)
+        .setContext(registration.context())
+        .setSeverity(message.isError() ? Severity.ERROR : toSeverity(level))
+        .setSeverityText(level == null ? null : level.getCode())
+        .setBody(message.getMessage())
+        .setAllAttributes(registration.attributes())
+        .setAttribute(HopAttributes.LOG_SUBJECT, message.getSubject())
+        .emit();
+  }
+
+  /** Find the registration of the log channel or of one of its parents. */
+  private Registration find(String logChannelId) {
+    LoggingRegistry registry = LoggingRegistry.getInstance();
+    String id = logChannelId;
+    for (int depth = 0; id != null && depth < MAX_DEPTH; depth++) {
+      Registration registration = registrations.get(id);
+      if (registration != null) {
+        return registration;
+      }
+
+      ILoggingObject object = registry.getLoggingObject(id);
+      if (object == null || object.getParent() == null) {
+        return null;
+      }
+      id = object.getParent().getLogChannelId();
+    }
+    return null;
+  }
+
+  private static Severity toSeverity(LogLevel level) {
+    if (level == null) {
+      return Severity.UNDEFINED_SEVERITY_NUMBER;
+    }
+    return switch (level) {
+      case ERROR -> Severity.ERROR;
+      case MINIMAL, BASIC -> Severity.INFO;
+      case DETAILED -> Severity.DEBUG;
+      case DEBUG -> Severity.DEBUG2;
+      case ROWLEVEL -> Severity.TRACE;
+      default -> Severity.UNDEFINED_SEVERITY_NUMBER;
+    };
+  }
+}
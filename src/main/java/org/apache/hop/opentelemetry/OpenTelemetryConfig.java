@@ -18,13 +18,18 @@
 package org.apache.hop.opentelemetry;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 
 /** Configuration properties for using OTLP. */
 public class OpenTelemetryConfig {
 
+  public static final String HISTOGRAM_EXPONENTIAL = "exponential";
+  public static final String HISTOGRAM_EXPLICIT = "explicit";
+
   private String serviceName;
 
   /** URL to the OTel collector's receiver. */
@@ -37,10 +42,125 @@ public class OpenTelemetryConfig {
 
   private Duration timeout;
 
+  /** Ratio of root executions sampled when no sampling rule matches. */
+  private double samplingRatio;
+
+  /** Sampling ratios by execution name, project or run configuration. */
+  private List<SamplingRule> samplingRules;
+
+  /** Keep root executions ending in error even if not sampled. */
+  private boolean samplingKeepErrors;
+
+  /** Keep root executions longer than this threshold even if not sampled, zero to disable. */
+  private Duration samplingSlowThreshold;
+
+  /** Maximum number of spans or log records kept in the queue of a batch processor. */
+  private int batchMaxQueueSize;
+
+  /** Maximum number of spans or log records exported in a single batch. */
+  private int batchMaxExportBatchSize;
+
+  /** Delay between two consecutive exports of a batch processor. */
+  private Duration batchScheduleDelay;
+
+  /** Maximum time a batch processor waits for an export to complete. */
+  private Duration batchExportTimeout;
+
+  /** Interval between two consecutive exports of metrics. */
+  private Duration metricExportInterval;
+
+  /** Directory of the disk buffer of failed exports, empty to disable. */
+  private String bufferDirectory;
+
+  /** Maximum size of the disk buffer in megabytes. */
+  private int bufferMaxSize;
+
+  /** Format of the files written with the file protocol, json or protobuf. */
+  private String fileFormat;
+
+  /** Compress the files written with the file protocol with gzip. */
+  private boolean fileCompression;
+
+  /** Size in megabytes after which a file is rotated, zero for no limit. */
+  private int fileMaxSize;
+
+  /** Age after which a file is rotated, zero for no limit. */
+  private Duration fileMaxAge;
+
+  /** Host of the Prometheus scrape endpoint. */
+  private String prometheusHost;
+
+  /** Port of the Prometheus scrape endpoint, zero to disable. */
+  private int prometheusPort;
+
+  /** Aggregation of the duration histograms, exponential or explicit. */
+  private String histogramAggregation;
+
+  /** Number of rows between two samples of the time per row of a transform, zero to disable. */
+  private int rowSamplingInterval;
+
+  /** Period in milliseconds of the sampling of the row sets, zero to disable. */
+  private int rowSetSamplingPeriod;
+
+  /** Measure the CPU time and allocated bytes of the transform threads. */
+  private boolean transformResources;
+
+  /** Publish the metrics of the JVM runtime. */
+  private boolean runtimeMetrics;
+
+  /** Minimum duration in milliseconds of a garbage collection added to the execution spans. */
+  private int gcEventThreshold;
+
+  /** Additional backends receiving some signals, each with its own batch processors. */
+  private List<ExporterTarget> exporterTargets;
+
+  /** Executions of an action traced individually before folding them, zero to disable. */
+  private int actionAggregationThreshold;
+
+  /** Child executions of a transform traced individually before sampling, zero to disable. */
+  private int childTraceLimit;
+
+  /** Ratio of the child executions of a transform traced beyond the limit. */
+  private double childSamplingRatio;
+
+  /** Emit Java Flight Recorder events for the executions, even if telemetry is not exported. */
+  private boolean jfrEvents;
+
+  /** Total time given to flush the telemetry when the process exits. */
+  private Duration shutdownTimeout;
+
   public OpenTelemetryConfig() {
     super();
     this.headers = new HashMap<>();
     this.timeout = Duration.ofSeconds(10);
+    this.samplingRatio = 1.0;
+    this.samplingRules = new ArrayList<>();
+    this.samplingKeepErrors = true;
+    this.samplingSlowThreshold = Duration.ZERO;
+    this.batchMaxQueueSize = 2048;
+    this.batchMaxExportBatchSize = 512;
+    this.batchScheduleDelay = Duration.ofMillis(100);
+    this.batchExportTimeout = Duration.ofSeconds(30);
+    this.metricExportInterval = Duration.ofSeconds(60);
+    this.bufferMaxSize = 100;
+    this.fileFormat = OtlpFileWriter.FORMAT_JSON;
+    this.fileMaxSize = 100;
+    this.fileMaxAge = Duration.ofHours(1);
+    this.prometheusHost = "0.0.0.0";
+    this.histogramAggregation = HISTOGRAM_EXPONENTIAL;
+    this.rowSetSamplingPeriod = 0;
+    this.transformResources = false;
+    this.runtimeMetrics = false;
+    this.gcEventThreshold = 10;
+    this.exporterTargets = new ArrayList<>();
+    this.shutdownTimeout = Duration.ofSeconds(5);
+    this.childSamplingRatio = 0.01;
+    this.jfrEvents = false;
+  }
+
+  /** Telemetry is enabled when an endpoint, a target or the Prometheus endpoint is configured. */
+  public boolean isEnabled() {
+    return StringUtils.isNotEmpty(endpoint) || !exporterTargets.isEmpty() || prometheusPort > 0;
   }
 
   public String getServiceName() {
@@ -109,6 +229,7 @@ public class OpenTelemetryConfig {
    * <ul>
    *   <li>grpc
    *   <li>http/protobuf
+   *   <li>file, the endpoint is the directory where OTLP files are written
    * </ul>
    */
   public void setProtocol(String protocol) {
@@ -122,4 +243,245 @@ public class OpenTelemetryConfig {
   public void setTimeout(Duration timeout) {
     this.timeout = timeout;
   }
+
+  public double getSamplingRatio() {
+    return samplingRatio;
+  }
+
+  /** Set the ratio of root executions sampled, between 0 and 1. */
+  public void setSamplingRatio(double ratio) {
+    // Not a number is ignored, the sampler would reject it
+    if (!Double.isNaN(ratio)) {
+      this.samplingRatio = Math.max(0, Math.min(1, ratio));
+    }
+  }
+
+  public List<SamplingRule> getSamplingRules() {
+    return samplingRules;
+  }
+
+  public void setSamplingRules(List<SamplingRule> rules) {
+    this.samplingRules = rules;
+  }
+
+  public boolean isSamplingKeepErrors() {
+    return samplingKeepErrors;
+  }
+
+  public void setSamplingKeepErrors(boolean keepErrors) {
+    this.samplingKeepErrors = keepErrors;
+  }
+
+  public Duration getSamplingSlowThreshold() {
+    return samplingSlowThreshold;
+  }
+
+  public void setSamplingSlowThreshold(Duration threshold) {
+    this.samplingSlowThreshold = threshold;
+  }
+
+  public int getBatchMaxQueueSize() {
+    return batchMaxQueueSize;
+  }
+
+  public void setBatchMaxQueueSize(int maxQueueSize) {
+    this.batchMaxQueueSize = maxQueueSize;
+  }
+
+  public int getBatchMaxExportBatchSize() {
+    return batchMaxExportBatchSize;
+  }
+
+  public void setBatchMaxExportBatchSize(int maxExportBatchSize) {
+    this.batchMaxExportBatchSize = maxExportBatchSize;
+  }
+
+  public Duration getBatchScheduleDelay() {
+    return batchScheduleDelay;
+  }
+
+  public void setBatchScheduleDelay(Duration scheduleDelay) {
+    this.batchScheduleDelay = scheduleDelay;
+  }
+
+  public Duration getBatchExportTimeout() {
+    return batchExportTimeout;
+  }
+
+  public void setBatchExportTimeout(Duration exportTimeout) {
+    this.batchExportTimeout = exportTimeout;
+  }
+
+  public Duration getMetricExportInterval() {
+    return metricExportInterval;
+  }
+
+  public void setMetricExportInterval(Duration interval) {
+    this.metricExportInterval = interval;
+  }
+
+  public String getBufferDirectory() {
+    return bufferDirectory;
+  }
+
+  public void setBufferDirectory(String directory) {
+    this.bufferDirectory = StringUtils.trim(directory);
+  }
+
+  public int getBufferMaxSize() {
+    return bufferMaxSize;
+  }
+
+  public void setBufferMaxSize(int maxSize) {
+    this.bufferMaxSize = maxSize;
+  }
+
+  public String getFileFormat() {
+    return fileFormat;
+  }
+
+  public void setFileFormat(String format) {
+    this.fileFormat = StringUtils.trim(format);
+  }
+
+  public boolean isFileCompression() {
+    return fileCompression;
+  }
+
+  public void setFileCompression(boolean compression) {
+    this.fileCompression = compression;
+  }
+
+  public int getFileMaxSize() {
+    return fileMaxSize;
+  }
+
+  public void setFileMaxSize(int maxSize) {
+    this.fileMaxSize = maxSize;
+  }
+
+  public Duration getFileMaxAge() {
+    return fileMaxAge;
+  }
+
+  public void setFileMaxAge(Duration maxAge) {
+    this.fileMaxAge = maxAge;
+  }
+
+  public String getPrometheusHost() {
+    return prometheusHost;
+  }
+
+  public void setPrometheusHost(String host) {
+    this.prometheusHost = StringUtils.trim(host);
+  }
+
+  public int getPrometheusPort() {
+    return prometheusPort;
+  }
+
+  public void setPrometheusPort(int port) {
+    this.prometheusPort = port;
+  }
+
+  public String getHistogramAggregation() {
+    return histogramAggregation;
+  }
+
+  /** Set the aggregation of the duration histograms, exponential or explicit. */
+  public void setHistogramAggregation(String aggregation) {
+    this.histogramAggregation = StringUtils.trim(aggregation);
+  }
+
+  public int getRowSamplingInterval() {
+    return rowSamplingInterval;
+  }
+
+  public void setRowSamplingInterval(int interval) {
+    this.rowSamplingInterval = interval;
+  }
+
+  public int getRowSetSamplingPeriod() {
+    return rowSetSamplingPeriod;
+  }
+
+  public void setRowSetSamplingPeriod(int period) {
+    this.rowSetSamplingPeriod = period;
+  }
+
+  public boolean isTransformResources() {
+    return transformResources;
+  }
+
+  public void setTransformResources(boolean transformResources) {
+    this.transformResources = transformResources;
+  }
+
+  public boolean isRuntimeMetrics() {
+    return runtimeMetrics;
+  }
+
+  public void setRuntimeMetrics(boolean runtimeMetrics) {
+    this.runtimeMetrics = runtimeMetrics;
+  }
+
+  public int getGcEventThreshold() {
+    return gcEventThreshold;
+  }
+
+  public void setGcEventThreshold(int threshold) {
+    this.gcEventThreshold = threshold;
+  }
+
+  public List<ExporterTarget> getExporterTargets() {
+    return exporterTargets;
+  }
+
+  public void setExporterTargets(List<ExporterTarget> targets) {
+    this.exporterTargets = targets;
+  }
+
+  public Duration getShutdownTimeout() {
+    return shutdownTimeout;
+  }
+
+  public void setShutdownTimeout(Duration timeout) {
+    this.shutdownTimeout = timeout;
+  }
+
+  public int getActionAggregationThreshold() {
+    return actionAggregationThreshold;
+  }
+
+  public void setActionAggregationThreshold(int threshold) {
+    this.actionAggregationThreshold = threshold;
+  }
+
+  public int getChildTraceLimit() {
+    return childTraceLimit;
+  }
+
+  public void setChildTraceLimit(int limit) {
+    this.childTraceLimit = limit;
+  }
+
+  public double getChildSamplingRatio() {
+    return childSamplingRatio;
+  }
+
+  /** Set the ratio of the child executions traced beyond the limit, between 0 and 1. */
+  public void setChildSamplingRatio(double ratio) {
+    // Not a number is ignored, the sampler would reject it
+    if (!Double.isNaN(ratio)) {
+      this.childSamplingRatio = Math.max(0, Math.min(1, ratio));
+    }
+  }
+
+  public boolean isJfrEvents() {
+    return jfrEvents;
+  }
+
+  public void setJfrEvents(boolean jfrEvents) {
+    this.jfrEvents = jfrEvents;
+  }
 }
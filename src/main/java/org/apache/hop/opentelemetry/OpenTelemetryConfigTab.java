@@ -17,8 +17,12 @@
  */
 package org.apache.hop.opentelemetry;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import org.apache.hop.core.Const;
 import org.apache.hop.core.gui.plugin.GuiPlugin;
 import org.apache.hop.core.gui.plugin.tab.GuiTab;
@@ -38,8 +42,10 @@ import org.eclipse.swt.custom.CTabItem;
 import org.eclipse.swt.layout.FormAttachment;
 import org.eclipse.swt.layout.FormData;
 import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
@@ -55,6 +61,16 @@ public class OpenTelemetryConfigTab {
   private Text wServiceName;
   private Text wEndpoint;
   private Combo wProtocol;
+  private Text wSamplingRatio;
+  private Text wSamplingRules;
+  private Button wSamplingKeepErrors;
+  private Text wSamplingSlowThreshold;
+  private Text wBatchMaxQueueSize;
+  private Text wBatchMaxExportBatchSize;
+  private Text wBatchScheduleDelay;
+  private Text wBatchExportTimeout;
+  private Text wMetricExportInterval;
+  private TableView wTargets;
   private TableView wHeaders;
 
   @GuiTab(
@@ -137,7 +153,7 @@ public class OpenTelemetryConfigTab {
     wlProtocol.setLayoutData(fdlProtocol);
 
     wProtocol = new Combo(wComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
-    wProtocol.setItems("gRPC", "http/protobuf");
+    wProtocol.setItems("gRPC", "http/protobuf", "file");
     PropsUi.setLook(wProtocol);
     FormData fdConnectionType = new FormData();
     fdConnectionType.top = new FormAttachment(wlProtocol, 0, SWT.CENTER);
@@ -145,6 +161,152 @@ public class OpenTelemetryConfigTab {
     fdConnectionType.right = new FormAttachment(100, 0);
     wProtocol.setLayoutData(fdConnectionType);
 
+    // Sampling ratio
+    //
+    wSamplingRatio =
+        createText(wComposite, wProtocol, "OpenTelemetryConfig.SamplingRatio", middle, margin);
+
+    // Sampling rules
+    //
+    wSamplingRules =
+        createText(wComposite, wSamplingRatio, "OpenTelemetryConfig.SamplingRules", middle, margin);
+
+    // Keep errors
+    //
+    Label wlSamplingKeepErrors = new Label(wComposite, SWT.RIGHT);
+    wlSamplingKeepErrors.setText(
+        BaseMessages.getString(PKG, "OpenTelemetryConfig.SamplingKeepErrors.Label"));
+    wlSamplingKeepErrors.setToolTipText(
+        BaseMessages.getString(PKG, "OpenTelemetryConfig.SamplingKeepErrors.Tooltip"));
+    PropsUi.setLook(wlSamplingKeepErrors);
+    FormData fdlSamplingKeepErrors = new FormData();
+    fdlSamplingKeepErrors.top = new FormAttachment(wSamplingRules, margin);
+    fdlSamplingKeepErrors.left = new FormAttachment(0, 0);
+    fdlSamplingKeepErrors.right = new FormAttachment(middle, -margin);
+    wlSamplingKeepErrors.setLayoutData(fdlSamplingKeepErrors);
+
+    wSamplingKeepErrors = new Button(wComposite, SWT.CHECK);
+    PropsUi.setLook(wSamplingKeepErrors);
+    FormData fdSamplingKeepErrors = new FormData();
+    fdSamplingKeepErrors.top = new FormAttachment(wlSamplingKeepErrors, 0, SWT.CENTER);
+    fdSamplingKeepErrors.left = new FormAttachment(middle, 0);
+    fdSamplingKeepErrors.right = new FormAttachment(100, 0);
+    wSamplingKeepErrors.setLayoutData(fdSamplingKeepErrors);
+
+    // Slow threshold
+    //
+    wSamplingSlowThreshold =
+        createText(
+            wComposite,
+            wSamplingKeepErrors,
+            "OpenTelemetryConfig.SamplingSlowThreshold",
+            middle,
+            margin);
+
+    // Batch processors
+    //
+    wBatchMaxQueueSize =
+        createText(
+            wComposite,
+            wSamplingSlowThreshold,
+            "OpenTelemetryConfig.BatchMaxQueueSize",
+            middle,
+            margin);
+    wBatchMaxExportBatchSize =
+        createText(
+            wComposite,
+            wBatchMaxQueueSize,
+            "OpenTelemetryConfig.BatchMaxExportBatchSize",
+            middle,
+            margin);
+    wBatchScheduleDelay =
+        createText(
+            wComposite,
+            wBatchMaxExportBatchSize,
+            "OpenTelemetryConfig.BatchScheduleDelay",
+            middle,
+            margin);
+    wBatchExportTimeout =
+        createText(
+            wComposite,
+            wBatchScheduleDelay,
+            "OpenTelemetryConfig.BatchExportTimeout",
+            middle,
+            margin);
+
+    // Metric export interval
+    //
+    wMetricExportInterval =
+        createText(
+            wComposite,
+            wBatchExportTimeout,
+            "OpenTelemetryConfig.MetricExportInterval",
+            middle,
+            margin);
+
+    // Additional exporter targets
+    //
+    Label wlTargets = new Label(wComposite, SWT.RIGHT);
+    wlTargets.setText(BaseMessages.getString(PKG, "OpenTelemetryConfig.Targets.Label"));
+    wlTargets.setToolTipText(BaseMessages.getString(PKG, "OpenTelemetryConfig.Targets.Tooltip"));
+    PropsUi.setLook(wlTargets);
+    FormData fdlTargets = new FormData();
+    fdlTargets.top = new FormAttachment(wMetricExportInterval, margin);
+    fdlTargets.left = new FormAttachment(0, 0);
+    fdlTargets.right = new FormAttachment(middle, -margin);
+    wlTargets.setLayoutData(fdlTargets);
+
+    ColumnInfo[] targetColumns = {
+      new ColumnInfo(
+          BaseMessages.getString(PKG, "OpenTelemetryConfig.Target.Name.Label"),
+          ColumnInfo.COLUMN_TYPE_TEXT,
+          false,
+          false),
+      new ColumnInfo(
+          BaseMessages.getString(PKG, "OpenTelemetryConfig.Target.Signals.Label"),
+          ColumnInfo.COLUMN_TYPE_TEXT,
+          false,
+          false),
+      new ColumnInfo(
+          BaseMessages.getString(PKG, "OpenTelemetryConfig.Target.Protocol.Label"),
+          ColumnInfo.COLUMN_TYPE_CCOMBO,
+          new String[] {"grpc", "http/protobuf", "file"},
+          false),
+      new ColumnInfo(
+          BaseMessages.getString(PKG, "OpenTelemetryConfig.Target.Endpoint.Label"),
+          ColumnInfo.COLUMN_TYPE_TEXT,
+          false,
+          false),
+      new ColumnInfo(
+          BaseMessages.getString(PKG, "OpenTelemetryConfig.Target.Timeout.Label"),
+          ColumnInfo.COLUMN_TYPE_TEXT,
+          false,
+          false),
+      new ColumnInfo(
+          BaseMessages.getString(PKG, "OpenTelemetryConfig.Target.Headers.Label"),
+          ColumnInfo.COLUMN_TYPE_TEXT,
+          false,
+          false)
+    };
+
+    wTargets =
+        new TableView(
+            Variables.getADefaultVariableSpace(),
+            wComposite,
+            SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL,
+            targetColumns,
+            0,
+            null,
+            PropsUi.getInstance());
+    wTargets.setReadonly(false);
+    FormData fdTargets = new FormData();
+    fdTargets.left = new FormAttachment(middle, 0);
+    fdTargets.top = new FormAttachment(wlTargets, 0, SWT.TOP);
+    fdTargets.right = new FormAttachment(100, 0);
+    fdTargets.height = (int) (120 * PropsUi.getInstance().getZoomFactor());
+    wTargets.setLayoutData(fdTargets);
+    PropsUi.setLook(wTargets);
+
     // Headers
     //
     Label wlHeaders = new Label(wComposite, SWT.RIGHT);
@@ -152,7 +314,7 @@ public class OpenTelemetryConfigTab {
     wlHeaders.setToolTipText(BaseMessages.getString(PKG, "OpenTelemetryConfig.Headers.Tooltip"));
     PropsUi.setLook(wlHeaders);
     FormData fdlHeaders = new FormData();
-    fdlHeaders.top = new FormAttachment(wProtocol, margin);
+    fdlHeaders.top = new FormAttachment(wTargets, margin);
     fdlHeaders.left = new FormAttachment(0, 0);
     fdlHeaders.right = new FormAttachment(middle, -margin);
     wlHeaders.setLayoutData(fdlHeaders);
@@ -194,10 +356,43 @@ public class OpenTelemetryConfigTab {
     wServiceName.addListener(SWT.Modify, e -> save());
     wEndpoint.addListener(SWT.Modify, e -> save());
     wProtocol.addListener(SWT.Modify, e -> save());
+    wSamplingRatio.addListener(SWT.Modify, e -> save());
+    wSamplingRules.addListener(SWT.Modify, e -> save());
+    wSamplingKeepErrors.addListener(SWT.Selection, e -> save());
+    wSamplingSlowThreshold.addListener(SWT.Modify, e -> save());
+    wBatchMaxQueueSize.addListener(SWT.Modify, e -> save());
+    wBatchMaxExportBatchSize.addListener(SWT.Modify, e -> save());
+    wBatchScheduleDelay.addListener(SWT.Modify, e -> save());
+    wBatchExportTimeout.addListener(SWT.Modify, e -> save());
+    wMetricExportInterval.addListener(SWT.Modify, e -> save());
 
     tabItem.setControl(wComposite);
   }
 
+  /** Create a labeled text field below the previous control. */
+  private Text createText(
+      Composite composite, Control previous, String key, int middle, int margin) {
+    Label label = new Label(composite, SWT.RIGHT);
+    label.setText(BaseMessages.getString(PKG, key + ".Label"));
+    label.setToolTipText(BaseMessages.getString(PKG, key + ".Tooltip"));
+    PropsUi.setLook(label);
+    FormData fdLabel = new FormData();
+    fdLabel.top = new FormAttachment(previous, margin);
+    fdLabel.left = new FormAttachment(0, 0);
+    fdLabel.right = new FormAttachment(middle, -margin);
+    label.setLayoutData(fdLabel);
+
+    Text text = new Text(composite, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    PropsUi.setLook(text);
+    FormData fdText = new FormData();
+    fdText.top = new FormAttachment(label, 0, SWT.CENTER);
+    fdText.left = new FormAttachment(middle, 0);
+    fdText.right = new FormAttachment(100, 0);
+    text.setLayoutData(fdText);
+
+    return text;
+  }
+
   private void load() {
     OpenTelemetryConfig config = OpenTelemetryPlugin.getInstance().loadConfig();
 
@@ -210,18 +405,57 @@ public class OpenTelemetryConfigTab {
     }
     wHeaders.optimizeTableView();
 
+    // Get the additional exporter targets
+    //
+    for (ExporterTarget target : config.getExporterTargets()) {
+      TableItem item = new TableItem(wTargets.table, SWT.NONE);
+      item.setText(1, Const.NVL(target.getName(), ""));
+      item.setText(2, String.join(",", target.getSignals()));
+      item.setText(3, Const.NVL(target.getProtocol(), ""));
+      item.setText(4, Const.NVL(target.getEndpoint(), ""));
+      item.setText(5, String.valueOf(target.getTimeout().getSeconds()));
+      item.setText(
+          6,
+          target.getHeaders().entrySet().stream()
+              .map(entry -> entry.getKey() + '=' + entry.getValue())
+              .collect(Collectors.joining(",")));
+    }
+    wTargets.optimizeTableView();
+
     wServiceName.setText(Const.NVL(config.getServiceName(), ""));
     wEndpoint.setText(Const.NVL(config.getEndpoint(), ""));
     wProtocol.setText(Const.NVL(config.getProtocol(), ""));
+    wSamplingRatio.setText(String.valueOf(config.getSamplingRatio()));
+    wSamplingRules.setText(SamplingRule.toString(config.getSamplingRules()));
+    wSamplingKeepErrors.setSelection(config.isSamplingKeepErrors());
+    wSamplingSlowThreshold.setText(String.valueOf(config.getSamplingSlowThreshold().getSeconds()));
+    wBatchMaxQueueSize.setText(String.valueOf(config.getBatchMaxQueueSize()));
+    wBatchMaxExportBatchSize.setText(String.valueOf(config.getBatchMaxExportBatchSize()));
+    wBatchScheduleDelay.setText(String.valueOf(config.getBatchScheduleDelay().toMillis()));
+    wBatchExportTimeout.setText(String.valueOf(config.getBatchExportTimeout().toMillis()));
+    wMetricExportInterval.setText(String.valueOf(config.getMetricExportInterval().toMillis()));
   }
 
   private void save() {
     try {
-      // Save the configuration...
-      OpenTelemetryConfig config = new OpenTelemetryConfig();
+      // Save the configuration, keeping options not edited in this tab
+      OpenTelemetryConfig config = OpenTelemetryPlugin.getInstance().loadConfig();
       config.setServiceName(wServiceName.getText());
       config.setEndpoint(wEndpoint.getText());
       config.setProtocol(wProtocol.getText());
+      config.setSamplingRatio(Const.toDouble(wSamplingRatio.getText(), 1.0));
+      config.setSamplingRules(SamplingRule.parse(wSamplingRules.getText()));
+      config.setSamplingKeepErrors(wSamplingKeepErrors.getSelection());
+      config.setSamplingSlowThreshold(
+          Duration.ofSeconds(Const.toInt(wSamplingSlowThreshold.getText(), 0)));
+      config.setBatchMaxQueueSize(Const.toInt(wBatchMaxQueueSize.getText(), 2048));
+      config.setBatchMaxExportBatchSize(Const.toInt(wBatchMaxExportBatchSize.getText(), 512));
+      config.setBatchScheduleDelay(
+          Duration.ofMillis(Const.toInt(wBatchScheduleDelay.getText(), 100)));
+      config.setBatchExportTimeout(
+          Duration.ofMillis(Const.toInt(wBatchExportTimeout.getText(), 30000)));
+      config.setMetricExportInterval(
+          Duration.ofMillis(Const.toInt(wMetricExportInterval.getText(), 60000)));
 
       Map<String, String> headers = new HashMap<>();
       for (int i = 0; i < wHeaders.nrNonEmpty(); i++) {
@@ -232,7 +466,22 @@ public class OpenTelemetryConfigTab {
       }
       config.setHeaders(headers);
 
-      // config.setTimeout(timeout);
+      // Targets are parsed from their text form, so invalid rows are dropped as when loading
+      List<String> targets = new ArrayList<>();
+      for (int i = 0; i < wTargets.nrNonEmpty(); i++) {
+        TableItem item = wTargets.getNonEmpty(i);
+        targets.add(
+            String.join(
+                "|",
+                item.getText(1),
+                item.getText(2),
+                item.getText(3),
+                item.getText(4),
+                item.getText(5),
+                item.getText(6)));
+      }
+      config.setExporterTargets(ExporterTarget.parse(String.join(";", targets)));
+
       OpenTelemetryPlugin.getInstance().saveConfig(config);
 
     } catch (Exception e) {
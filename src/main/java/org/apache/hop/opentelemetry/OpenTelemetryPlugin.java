@@ -17,38 +17,61 @@
  */
 package org.apache.hop.opentelemetry;
 
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.MINUTES;
 import static java.time.temporal.ChronoUnit.SECONDS;
 
 import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.baggage.propagation.W3CBaggagePropagator;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapPropagator;
 import io.opentelemetry.exporter.otlp.http.logs.OtlpHttpLogRecordExporter;
 import io.opentelemetry.exporter.otlp.http.metrics.OtlpHttpMetricExporter;
 import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
 import io.opentelemetry.exporter.otlp.logs.OtlpGrpcLogRecordExporter;
 import io.opentelemetry.exporter.otlp.metrics.OtlpGrpcMetricExporter;
 import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.exporter.prometheus.PrometheusHttpServer;
+import io.opentelemetry.instrumentation.runtimemetrics.java8.RuntimeMetrics;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.SdkLoggerProviderBuilder;
 import io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor;
 import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentSelector;
+import io.opentelemetry.sdk.metrics.InstrumentType;
 import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
+import io.opentelemetry.sdk.metrics.View;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
 import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.semconv.ServiceAttributes;
 import io.opentelemetry.semconv.incubating.HostIncubatingAttributes;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hop.core.Const;
 import org.apache.hop.core.HopVersionProvider;
 import org.apache.hop.core.config.HopConfig;
+import org.apache.hop.core.logging.HopLogStore;
 import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.logging.LogChannel;
 import org.apache.hop.core.variables.IVariables;
 import org.apache.hop.core.variables.Variable;
 import org.apache.hop.core.variables.VariableScope;
@@ -74,7 +97,7 @@ public class OpenTelemetryPlugin {
 
   @Variable(
       scope = VariableScope.SYSTEM,
-      description = "The OLTP transport protocol. Options MUST be one of: grpc, http/protobuf.")
+      description = "The OLTP transport protocol. Options MUST be one of: grpc, http/protobuf, file.")
   public static final String OTEL_EXPORTER_OTLP_PROTOCOL = "OTEL_EXPORTER_OTLP_PROTOCOL";
 
   @Variable(
@@ -82,8 +105,199 @@ public class OpenTelemetryPlugin {
       description = "Maximum time the OTLP exporter will wait for each batch export.")
   public static final String OTEL_EXPORTER_OTLP_TIMEOUT = "OTEL_EXPORTER_OTLP_TIMEOUT";
 
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Ratio of root workflow or pipeline executions traced when no sampling rule matches, between 0 and 1.")
+  public static final String OTEL_TRACES_SAMPLER_ARG = "OTEL_TRACES_SAMPLER_ARG";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Sampling ratios by execution name, project or run configuration, i.e.: name:Load.*=0.1;project:sandbox=0")
+  public static final String HOP_OTEL_SAMPLING_RULES = "HOP_OTEL_SAMPLING_RULES";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Always keep the traces of root executions ending in error (true or false).")
+  public static final String HOP_OTEL_SAMPLING_KEEP_ERRORS = "HOP_OTEL_SAMPLING_KEEP_ERRORS";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Always keep the traces of root executions longer than this number of seconds, 0 to disable.")
+  public static final String HOP_OTEL_SAMPLING_SLOW_THRESHOLD = "HOP_OTEL_SAMPLING_SLOW_THRESHOLD";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Maximum number of spans or log records kept in the queue of the batch processors before dropping.")
+  public static final String OTEL_BSP_MAX_QUEUE_SIZE = "OTEL_BSP_MAX_QUEUE_SIZE";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Maximum number of spans or log records exported in a single batch.")
+  public static final String OTEL_BSP_MAX_EXPORT_BATCH_SIZE = "OTEL_BSP_MAX_EXPORT_BATCH_SIZE";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Delay in milliseconds between two consecutive exports of spans or log records.")
+  public static final String OTEL_BSP_SCHEDULE_DELAY = "OTEL_BSP_SCHEDULE_DELAY";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Maximum time in milliseconds the batch processors wait for an export to complete.")
+  public static final String OTEL_BSP_EXPORT_TIMEOUT = "OTEL_BSP_EXPORT_TIMEOUT";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Interval in milliseconds between two consecutive exports of metrics.")
+  public static final String OTEL_METRIC_EXPORT_INTERVAL = "OTEL_METRIC_EXPORT_INTERVAL";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Directory where exports are buffered while the collector is unreachable, empty to disable (grpc and http/protobuf only).")
+  public static final String HOP_OTEL_BUFFER_DIRECTORY = "HOP_OTEL_BUFFER_DIRECTORY";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Maximum size in megabytes of the disk buffer, the oldest exports are evicted.")
+  public static final String HOP_OTEL_BUFFER_MAX_SIZE = "HOP_OTEL_BUFFER_MAX_SIZE";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Format of the files written with the file protocol: json or protobuf.")
+  public static final String HOP_OTEL_FILE_FORMAT = "HOP_OTEL_FILE_FORMAT";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Compress the files written with the file protocol with gzip (true or false).")
+  public static final String HOP_OTEL_FILE_COMPRESSION = "HOP_OTEL_FILE_COMPRESSION";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Size in megabytes after which a file is rotated, 0 for no limit.")
+  public static final String HOP_OTEL_FILE_MAX_SIZE = "HOP_OTEL_FILE_MAX_SIZE";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Age in minutes after which a file is rotated, 0 for no limit.")
+  public static final String HOP_OTEL_FILE_MAX_AGE = "HOP_OTEL_FILE_MAX_AGE";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Port of the Prometheus scrape endpoint serving the metrics, 0 to disable.")
+  public static final String HOP_OTEL_PROMETHEUS_PORT = "HOP_OTEL_PROMETHEUS_PORT";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description = "Host or address the Prometheus scrape endpoint is bound to.")
+  public static final String HOP_OTEL_PROMETHEUS_HOST = "HOP_OTEL_PROMETHEUS_HOST";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Aggregation of the duration histograms: exponential (base-2 buckets) or explicit.")
+  public static final String HOP_OTEL_HISTOGRAM_AGGREGATION = "HOP_OTEL_HISTOGRAM_AGGREGATION";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Record the time per row of the transforms on one row out of this number, 0 to disable.")
+  public static final String HOP_OTEL_ROW_SAMPLING_INTERVAL = "HOP_OTEL_ROW_SAMPLING_INTERVAL";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Period in milliseconds of the sampling of the row sets between transforms, for example 1000, 0 to disable.")
+  public static final String HOP_OTEL_ROWSET_SAMPLING_PERIOD = "HOP_OTEL_ROWSET_SAMPLING_PERIOD";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Measure the CPU time and allocated bytes of the transform threads (true or false).")
+  public static final String HOP_OTEL_TRANSFORM_RESOURCES = "HOP_OTEL_TRANSFORM_RESOURCES";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Publish the JVM runtime metrics and the resources used by each execution (true or false).")
+  public static final String HOP_OTEL_RUNTIME_METRICS = "HOP_OTEL_RUNTIME_METRICS";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Minimum duration in milliseconds of a GC pause added as event to the execution spans.")
+  public static final String HOP_OTEL_GC_EVENT_THRESHOLD = "HOP_OTEL_GC_EVENT_THRESHOLD";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Additional backends as name|signals|protocol|endpoint|timeout|headers separated by semicolons.")
+  public static final String HOP_OTEL_EXPORTER_TARGETS = "HOP_OTEL_EXPORTER_TARGETS";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Total time in milliseconds given to flush the telemetry when the process exits, the rest is dropped.")
+  public static final String HOP_OTEL_SHUTDOWN_TIMEOUT = "HOP_OTEL_SHUTDOWN_TIMEOUT";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Executions of the same action traced individually before folding the next ones in a summary span, 0 to disable.")
+  public static final String HOP_OTEL_ACTION_AGGREGATION_THRESHOLD =
+      "HOP_OTEL_ACTION_AGGREGATION_THRESHOLD";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Child executions launched by the same transform traced individually before sampling the next ones, 0 to disable.")
+  public static final String HOP_OTEL_CHILD_TRACE_LIMIT = "HOP_OTEL_CHILD_TRACE_LIMIT";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Ratio of the child executions of a transform traced beyond the limit, failures are always kept.")
+  public static final String HOP_OTEL_CHILD_SAMPLING_RATIO = "HOP_OTEL_CHILD_SAMPLING_RATIO";
+
+  @Variable(
+      scope = VariableScope.SYSTEM,
+      description =
+          "Emit Java Flight Recorder events for the executions of pipelines, transforms, workflows and actions, even without an endpoint.")
+  public static final String HOP_OTEL_JFR_EVENTS = "HOP_OTEL_JFR_EVENTS";
+
+  /** The longest a top-level execution waits for the SDK initialized in the background. */
+  public static final Duration READY_TIMEOUT = Duration.ofSeconds(5);
+
   private static OpenTelemetryPlugin instance;
 
+  private final LogRecordBridge logBridge = new LogRecordBridge();
+
+  private final ExporterMetrics exporterMetrics = new ExporterMetrics();
+
+  private final ExecutionResourceMonitor resourceMonitor = new ExecutionResourceMonitor();
+
+  private final TransformMetricsObserver transformMetrics = new TransformMetricsObserver();
+
+  private final TelemetryExecutor telemetryExecutor = new TelemetryExecutor();
+
+  private volatile boolean enabled;
+
+  private volatile boolean ready;
+
+  private final Object readiness = new Object();
+
+  private DiskBufferedExporter bufferedExporter;
+
+  private volatile OpenTelemetrySdk telemetry;
+
+  private volatile OpenTelemetryConfig config = new OpenTelemetryConfig();
+
+  private volatile ExecutionSampler sampler = new ExecutionSampler(config);
+
   /**
    * Gets instance
    *
@@ -100,13 +314,40 @@ public class OpenTelemetryPlugin {
     super();
   }
 
+  /**
+   * Load the configuration and initialize the SDK in the background, off the startup path.
+   *
+   * <p>When nothing is configured to receive the telemetry, the SDK is not created at all and the
+   * extension points return before touching OpenTelemetry.
+   */
   void init(ILogChannel log, IVariables variables) {
     try {
+      OpenTelemetryConfig config = loadConfig();
+      this.config = config;
+      sampler = new ExecutionSampler(config);
 
-      //  Thread.sleep(5000);
+      if (!config.isEnabled()) {
+        log.logBasic("OpenTelemetry disabled, no endpoint configured");
+        return;
+      }
+      enabled = true;
 
-      OpenTelemetryConfig config = loadConfig();
+      Thread thread = new Thread(() -> initialize(log, config), "OpenTelemetry initialization");
+      thread.setDaemon(true);
+      thread.start();
+    } catch (Exception e) {
+      log.logError("OpenTelemetry initialization error", e);
+      enabled = false;
+    }
+  }
 
+  /**
+   * Build the SDK and register it as global instance. Top-level executions started meanwhile wait
+   * for it, at most {@link #READY_TIMEOUT}.
+   */
+  protected void initialize(ILogChannel log, OpenTelemetryConfig config) {
+    boolean success = false;
+    try {
       log.logBasic(
           "OpenTelemetry for service '"
               + config.getServiceName()
@@ -114,19 +355,63 @@ public class OpenTelemetryPlugin {
               + config.getProtocol()
               + " to endpoint: "
               + config.getEndpoint());
+      for (ExporterTarget target : config.getExporterTargets()) {
+        log.logBasic(
+            "OpenTelemetry "
+                + String.join(", ", target.getSignals())
+                + " also exported to target '"
+                + target.getName()
+                + "' with transport protocol "
+                + target.getProtocol()
+                + " to endpoint: "
+                + target.getEndpoint());
+      }
+
+      // Buffer exports on disk while the collector is unreachable
+      //
+      bufferedExporter = createBufferedExporter(config, log);
 
       // Initialize OpenTelemetry
       //
+      // The meter provider is created first to publish self-metrics of the other providers
+      SdkMeterProvider meterProvider = createMeterProvider(config);
+      bind(meterProvider);
+      if (bufferedExporter != null) {
+        exporterMetrics.observe(bufferedExporter.getBuffer());
+      }
+
       OpenTelemetrySdk telemetry =
           OpenTelemetrySdk.builder()
-              .setLoggerProvider(createLoggerProvider(config))
-              .setTracerProvider(createTracerProvider(config))
-              .setMeterProvider(createMeterProvider(config))
+              .setLoggerProvider(createLoggerProvider(config, meterProvider))
+              .setTracerProvider(createTracerProvider(config, meterProvider))
+              .setMeterProvider(meterProvider)
+              .setPropagators(
+                  ContextPropagators.create(
+                      TextMapPropagator.composite(
+                          W3CTraceContextPropagator.getInstance(),
+                          W3CBaggagePropagator.getInstance())))
               .buildAndRegisterGlobal();
 
-      // Add hook to close SDK, which flushes logs, metrics and traces
+      // Publish the JVM runtime metrics, and the share of each execution
       //
-      Runtime.getRuntime().addShutdownHook(new Thread(telemetry::close));
+      RuntimeMetrics runtimeMetrics = null;
+      if (config.isRuntimeMetrics()) {
+        runtimeMetrics = RuntimeMetrics.builder(telemetry).enableExperimentalJmxTelemetry().build();
+        resourceMonitor.bind(meterProvider);
+        resourceMonitor.listenGarbageCollections(config.getGcEventThreshold());
+      }
+      RuntimeMetrics closeableRuntimeMetrics = runtimeMetrics;
+
+      // Add hook to close SDK, which flushes logs, metrics and traces within the budget
+      //
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(() -> shutdown(log, config, telemetry, closeableRuntimeMetrics)));
+      this.telemetry = telemetry;
+
+      // Stream log events of traced executions
+      //
+      HopLogStore.getAppender().addLoggingEventListener(logBridge);
 
       LongCounter hopStartCount =
           GlobalOpenTelemetry.getMeter("CLIENT")
@@ -135,52 +420,340 @@ public class OpenTelemetryPlugin {
               .build();
 
       hopStartCount.add(1);
+      success = true;
     } catch (Exception e) {
       log.logError("OpenTelemetry initialization error", e);
+    } finally {
+      setReady(success);
     }
   }
 
+  /** Publish the self-metrics of the plugin and the metrics of the running transforms. */
+  void bind(MeterProvider meterProvider) {
+    exporterMetrics.bind(meterProvider);
+    telemetryExecutor.bind(meterProvider);
+    transformMetrics.bind(meterProvider);
+  }
+
   /**
-   * Load configuration.
+   * Mark the SDK registered as global instance ready, or telemetry disabled, and wake up the
+   * executions waiting for it. Also used by the benchmarks registering their own SDK.
+   */
+  void setReady(boolean ready) {
+    synchronized (readiness) {
+      this.enabled = ready;
+      this.ready = ready;
+      readiness.notifyAll();
+    }
+  }
+
+  /**
+   * Shutdown the SDK within the configured budget, when the process exits.
    *
-   * <p>By default use system properties else use the HopConfig.
+   * <p>Half of the budget at most is given to the telemetry of the executions still being
+   * recorded, the rest to the exports. Exports not completed when the budget is exhausted are
+   * dropped, so a slow collector does not hold the process.
    */
-  public OpenTelemetryConfig loadConfig() {
-    OpenTelemetryConfig config = new OpenTelemetryConfig();
+  protected void shutdown(
+      ILogChannel log,
+      OpenTelemetryConfig config,
+      OpenTelemetrySdk telemetry,
+      RuntimeMetrics runtimeMetrics) {
+    long start = System.nanoTime();
+    long budget = config.getShutdownTimeout().toNanos();
+
+    telemetryExecutor.shutdown(Duration.ofNanos(budget / 2));
+    if (runtimeMetrics != null) {
+      runtimeMetrics.close();
+    }
+
+    long remaining = Math.max(0, budget - (System.nanoTime() - start));
+    CompletableResultCode result =
+        telemetry.shutdown().join(remaining, TimeUnit.NANOSECONDS);
+    closeBufferedExporter();
+
+    log.logBasic(
+        "OpenTelemetry shutdown in "
+            + (System.nanoTime() - start) / 1_000_000
+            + " ms"
+            + (result.isDone() ? "" : ", budget exhausted"));
+    for (ExporterTarget target : getAllExporterTargets(config)) {
+      log.logBasic(getShutdownReport(target));
+    }
+  }
+
+  /**
+   * Describe the items of a target since the start of the process: flushed by the exporter, failed
+   * to export, and dropped before reaching the exporter, by a full queue or at shutdown.
+   */
+  protected String getShutdownReport(ExporterTarget target) {
+    String name = target.getName();
+    List<String> items = new ArrayList<>();
+    if (target.hasSignal(ExporterMetrics.SIGNAL_TRACES)) {
+      items.add(
+          getShutdownReport(
+              name, ExporterMetrics.SIGNAL_TRACES, "spans", exporterMetrics.getEndedSpans()));
+    }
+    if (target.hasSignal(ExporterMetrics.SIGNAL_LOGS)) {
+      items.add(
+          getShutdownReport(
+              name,
+              ExporterMetrics.SIGNAL_LOGS,
+              "log records",
+              exporterMetrics.getEmittedLogRecords()));
+    }
+    if (target.hasSignal(ExporterMetrics.SIGNAL_METRICS)) {
+      // Metric points are read on export, none is dropped before
+      items.add(getShutdownReport(name, ExporterMetrics.SIGNAL_METRICS, "metric points", -1));
+    }
+    return "OpenTelemetry target '" + name + "': " + String.join("; ", items);
+  }
+
+  /**
+   * Describe the items of a signal of a target.
+   *
+   * @param produced the number of items handed over to the batch processors, or -1 if unknown
+   */
+  private String getShutdownReport(String target, String signal, String items, long produced) {
+    long flushed = exporterMetrics.getExported(target, signal, true);
+    long failed = exporterMetrics.getExported(target, signal, false);
+    String report = items + " " + flushed + " flushed, " + failed + " failed";
+    if (produced >= 0) {
+      report += ", " + Math.max(0, produced - flushed - failed) + " dropped";
+    }
+    return report;
+  }
 
-    String serviceName = System.getProperty(OTEL_SERVICE_NAME);
-    if (StringUtils.isEmpty(serviceName)) {
-      serviceName = HopConfig.readOptionString(OTEL_SERVICE_NAME, "Apache Hop");
+  /**
+   * Flush the spans and log records when a top-level execution is finished, without waiting for
+   * the next batch nor for the exports to complete.
+   *
+   * <p>Metrics are exported on their own interval and when the process exits.
+   */
+  public CompletableResultCode flush() {
+    OpenTelemetrySdk sdk = telemetry;
+    if (sdk == null) {
+      return CompletableResultCode.ofSuccess();
     }
-    config.setServiceName(serviceName);
+    long start = System.nanoTime();
+    CompletableResultCode result =
+        CompletableResultCode.ofAll(
+            List.of(
+                sdk.getSdkTracerProvider().forceFlush(),
+                sdk.getSdkLoggerProvider().forceFlush()));
+    result.whenComplete(() -> exporterMetrics.recordFlush(start, result.isSuccess()));
+    return result;
+  }
+
+  /**
+   * Gets whether the SDK initialized in the background is registered as global instance, without
+   * waiting for it
+   *
+   * @return value of ready
+   */
+  public boolean isReady() {
+    return ready;
+  }
 
-    String endpoint = System.getProperty(OTEL_EXPORTER_OTLP_ENDPOINT);
-    if (StringUtils.isEmpty(endpoint)) {
-      endpoint = HopConfig.readOptionString(OTEL_EXPORTER_OTLP_ENDPOINT, "");
+  /**
+   * Wait for the SDK initialized in the background, unless telemetry is disabled meanwhile.
+   *
+   * @param timeout the longest time to wait
+   * @return true if the SDK is ready
+   */
+  public boolean awaitReady(Duration timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    synchronized (readiness) {
+      while (enabled && !ready) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          break;
+        }
+        TimeUnit.NANOSECONDS.timedWait(readiness, remaining);
+      }
+      return ready;
     }
-    config.setEndpoint(endpoint);
+  }
+
+  /**
+   * Gets whether telemetry is enabled, the SDK may still be initialized in the background
+   *
+   * @return value of enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
 
-    String protocol = System.getProperty(OTEL_EXPORTER_OTLP_PROTOCOL);
-    if (StringUtils.isEmpty(protocol)) {
-      protocol = HopConfig.readOptionString(OTEL_EXPORTER_OTLP_PROTOCOL, "grpc");
+  /**
+   * Create the disk buffer of failed exports if configured.
+   *
+   * <p>Buffered exports are replayed with the OTLP protocol of the default target, grpc or
+   * http/protobuf, the buffer is not available with the file protocol.
+   */
+  protected DiskBufferedExporter createBufferedExporter(
+      OpenTelemetryConfig config, ILogChannel log) {
+    if (StringUtils.isEmpty(config.getBufferDirectory())
+        || StringUtils.isEmpty(config.getEndpoint())) {
+      return null;
+    }
+    if (!"grpc".equalsIgnoreCase(config.getProtocol())
+        && !"http/protobuf".equalsIgnoreCase(config.getProtocol())) {
+      log.logError("OpenTelemetry disk buffer is not available with the file protocol");
+      return null;
     }
-    config.setProtocol(protocol);
 
-    String headers = System.getProperty(OTEL_EXPORTER_OTLP_HEADERS);
-    if (StringUtils.isEmpty(headers)) {
-      headers = HopConfig.readOptionString(OTEL_EXPORTER_OTLP_HEADERS, "");
+    try {
+      DiskBuffer buffer =
+          new DiskBuffer(
+              Path.of(config.getBufferDirectory()), config.getBufferMaxSize() * 1024L * 1024L);
+      log.logBasic("OpenTelemetry exports buffered on disk in " + config.getBufferDirectory());
+      return new DiskBufferedExporter(buffer, config);
+    } catch (IOException e) {
+      log.logError("Unable to open OpenTelemetry disk buffer " + config.getBufferDirectory(), e);
+      return null;
     }
-    config.setHeadersAsString(headers);
+  }
 
-    int timeout = Const.toInt(System.getProperty(OTEL_EXPORTER_OTLP_TIMEOUT), 0);
-    if (timeout == 0) {
-      timeout = HopConfig.readOptionInteger(OTEL_EXPORTER_OTLP_TIMEOUT, 10);
+  private void closeBufferedExporter() {
+    if (bufferedExporter != null) {
+      try {
+        bufferedExporter.close();
+      } catch (IOException e) {
+        // Ignore, the JVM is shutting down
+      }
     }
-    config.setTimeout(Duration.of(timeout, SECONDS));
+  }
+
+  /**
+   * Gets the bridge streaming Hop log events to OpenTelemetry
+   *
+   * @return value of logBridge
+   */
+  public LogRecordBridge getLogBridge() {
+    return logBridge;
+  }
 
+  /**
+   * Gets the monitor of the resources used by the running executions
+   *
+   * @return value of resourceMonitor
+   */
+  public ExecutionResourceMonitor getResourceMonitor() {
+    return resourceMonitor;
+  }
+
+  /**
+   * Gets the observer of the row counters of the running transforms
+   *
+   * @return value of transformMetrics
+   */
+  public TransformMetricsObserver getTransformMetrics() {
+    return transformMetrics;
+  }
+
+  /**
+   * Gets the executor recording the telemetry of finished executions
+   *
+   * @return value of telemetryExecutor
+   */
+  public TelemetryExecutor getTelemetryExecutor() {
+    return telemetryExecutor;
+  }
+
+  /**
+   * Gets the configuration loaded at initialization
+   *
+   * @return value of config
+   */
+  public OpenTelemetryConfig getConfig() {
     return config;
   }
 
+  /**
+   * Gets the sampler deciding which executions are traced
+   *
+   * @return value of sampler
+   */
+  public ExecutionSampler getSampler() {
+    return sampler;
+  }
+
+  /**
+   * Load configuration.
+   *
+   * <p>By default use system properties else use the HopConfig.
+   */
+  public OpenTelemetryConfig loadConfig() {
+    OpenTelemetryConfig config = new OpenTelemetryConfig();
+    config.setServiceName(readOption(OTEL_SERVICE_NAME, "Apache Hop"));
+    config.setEndpoint(readOption(OTEL_EXPORTER_OTLP_ENDPOINT, ""));
+    config.setProtocol(readOption(OTEL_EXPORTER_OTLP_PROTOCOL, "grpc"));
+    config.setHeadersAsString(readOption(OTEL_EXPORTER_OTLP_HEADERS, ""));
+    config.setTimeout(Duration.of(readOption(OTEL_EXPORTER_OTLP_TIMEOUT, 10), SECONDS));
+
+    config.setSamplingRatio(Const.toDouble(readOption(OTEL_TRACES_SAMPLER_ARG, "1.0"), 1.0));
+    config.setSamplingRules(SamplingRule.parse(readOption(HOP_OTEL_SAMPLING_RULES, "")));
+    config.setSamplingKeepErrors(readOption(HOP_OTEL_SAMPLING_KEEP_ERRORS, true));
+    config.setSamplingSlowThreshold(
+        Duration.of(readOption(HOP_OTEL_SAMPLING_SLOW_THRESHOLD, 0), SECONDS));
+
+    config.setBatchMaxQueueSize(readOption(OTEL_BSP_MAX_QUEUE_SIZE, 2048));
+    config.setBatchMaxExportBatchSize(readOption(OTEL_BSP_MAX_EXPORT_BATCH_SIZE, 512));
+    config.setBatchScheduleDelay(Duration.of(readOption(OTEL_BSP_SCHEDULE_DELAY, 100), MILLIS));
+    config.setBatchExportTimeout(Duration.of(readOption(OTEL_BSP_EXPORT_TIMEOUT, 30000), MILLIS));
+    config.setMetricExportInterval(
+        Duration.of(readOption(OTEL_METRIC_EXPORT_INTERVAL, 60000), MILLIS));
+
+    config.setBufferDirectory(readOption(HOP_OTEL_BUFFER_DIRECTORY, ""));
+    config.setBufferMaxSize(readOption(HOP_OTEL_BUFFER_MAX_SIZE, 100));
+
+    config.setFileFormat(readOption(HOP_OTEL_FILE_FORMAT, OtlpFileWriter.FORMAT_JSON));
+    config.setFileCompression(readOption(HOP_OTEL_FILE_COMPRESSION, false));
+    config.setFileMaxSize(readOption(HOP_OTEL_FILE_MAX_SIZE, 100));
+    config.setFileMaxAge(Duration.of(readOption(HOP_OTEL_FILE_MAX_AGE, 60), MINUTES));
+
+    config.setPrometheusHost(readOption(HOP_OTEL_PROMETHEUS_HOST, "0.0.0.0"));
+    config.setPrometheusPort(readOption(HOP_OTEL_PROMETHEUS_PORT, 0));
+
+    config.setHistogramAggregation(
+        readOption(HOP_OTEL_HISTOGRAM_AGGREGATION, OpenTelemetryConfig.HISTOGRAM_EXPONENTIAL));
+    config.setRowSamplingInterval(readOption(HOP_OTEL_ROW_SAMPLING_INTERVAL, 0));
+    config.setRowSetSamplingPeriod(readOption(HOP_OTEL_ROWSET_SAMPLING_PERIOD, 0));
+    config.setTransformResources(readOption(HOP_OTEL_TRANSFORM_RESOURCES, false));
+    config.setRuntimeMetrics(readOption(HOP_OTEL_RUNTIME_METRICS, false));
+    config.setGcEventThreshold(readOption(HOP_OTEL_GC_EVENT_THRESHOLD, 10));
+    config.setExporterTargets(ExporterTarget.parse(readOption(HOP_OTEL_EXPORTER_TARGETS, "")));
+    config.setActionAggregationThreshold(readOption(HOP_OTEL_ACTION_AGGREGATION_THRESHOLD, 0));
+    config.setChildTraceLimit(readOption(HOP_OTEL_CHILD_TRACE_LIMIT, 0));
+    config.setChildSamplingRatio(
+        Const.toDouble(readOption(HOP_OTEL_CHILD_SAMPLING_RATIO, "0.01"), 0.01));
+    config.setJfrEvents(readOption(HOP_OTEL_JFR_EVENTS, false));
+    config.setShutdownTimeout(Duration.of(readOption(HOP_OTEL_SHUTDOWN_TIMEOUT, 5000), MILLIS));
+
+    return config;
+  }
+
+  /** Read an option from system properties, else from the HopConfig. */
+  protected static String readOption(String key, String defaultValue) {
+    String value = System.getProperty(key);
+    if (StringUtils.isEmpty(value)) {
+      value = HopConfig.readOptionString(key, defaultValue);
+    }
+    return value;
+  }
+
+  protected static int readOption(String key, int defaultValue) {
+    return Const.toInt(readOption(key, null), defaultValue);
+  }
+
+  protected static boolean readOption(String key, boolean defaultValue) {
+    String value = readOption(key, null);
+    if (StringUtils.isEmpty(value)) {
+      return defaultValue;
+    }
+    return "true".equalsIgnoreCase(value) || "Y".equalsIgnoreCase(value);
+  }
+
   /** Save configuration to the HopConfig store */
   public void saveConfig(OpenTelemetryConfig config) {
     HopConfig.getInstance().saveOption(OTEL_SERVICE_NAME, config.getServiceName());
@@ -189,95 +762,321 @@ public class OpenTelemetryPlugin {
     HopConfig.getInstance().saveOption(OTEL_EXPORTER_OTLP_HEADERS, config.getHeadersAsSrtring());
     HopConfig.getInstance()
         .saveOption(OTEL_EXPORTER_OTLP_TIMEOUT, String.valueOf(config.getTimeout().getSeconds()));
+    HopConfig.getInstance()
+        .saveOption(OTEL_TRACES_SAMPLER_ARG, String.valueOf(config.getSamplingRatio()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_SAMPLING_RULES, SamplingRule.toString(config.getSamplingRules()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_SAMPLING_KEEP_ERRORS, String.valueOf(config.isSamplingKeepErrors()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_SAMPLING_SLOW_THRESHOLD,
+            String.valueOf(config.getSamplingSlowThreshold().getSeconds()));
+    HopConfig.getInstance()
+        .saveOption(OTEL_BSP_MAX_QUEUE_SIZE, String.valueOf(config.getBatchMaxQueueSize()));
+    HopConfig.getInstance()
+        .saveOption(
+            OTEL_BSP_MAX_EXPORT_BATCH_SIZE, String.valueOf(config.getBatchMaxExportBatchSize()));
+    HopConfig.getInstance()
+        .saveOption(
+            OTEL_BSP_SCHEDULE_DELAY, String.valueOf(config.getBatchScheduleDelay().toMillis()));
+    HopConfig.getInstance()
+        .saveOption(
+            OTEL_BSP_EXPORT_TIMEOUT, String.valueOf(config.getBatchExportTimeout().toMillis()));
+    HopConfig.getInstance()
+        .saveOption(
+            OTEL_METRIC_EXPORT_INTERVAL,
+            String.valueOf(config.getMetricExportInterval().toMillis()));
+    HopConfig.getInstance().saveOption(HOP_OTEL_BUFFER_DIRECTORY, config.getBufferDirectory());
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_BUFFER_MAX_SIZE, String.valueOf(config.getBufferMaxSize()));
+    HopConfig.getInstance().saveOption(HOP_OTEL_FILE_FORMAT, config.getFileFormat());
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_FILE_COMPRESSION, String.valueOf(config.isFileCompression()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_FILE_MAX_SIZE, String.valueOf(config.getFileMaxSize()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_FILE_MAX_AGE, String.valueOf(config.getFileMaxAge().toMinutes()));
+    HopConfig.getInstance().saveOption(HOP_OTEL_PROMETHEUS_HOST, config.getPrometheusHost());
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_PROMETHEUS_PORT, String.valueOf(config.getPrometheusPort()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_HISTOGRAM_AGGREGATION, config.getHistogramAggregation());
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_ROW_SAMPLING_INTERVAL, String.valueOf(config.getRowSamplingInterval()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_ROWSET_SAMPLING_PERIOD, String.valueOf(config.getRowSetSamplingPeriod()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_TRANSFORM_RESOURCES, String.valueOf(config.isTransformResources()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_RUNTIME_METRICS, String.valueOf(config.isRuntimeMetrics()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_GC_EVENT_THRESHOLD, String.valueOf(config.getGcEventThreshold()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_EXPORTER_TARGETS, ExporterTarget.toString(config.getExporterTargets()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_SHUTDOWN_TIMEOUT, String.valueOf(config.getShutdownTimeout().toMillis()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_ACTION_AGGREGATION_THRESHOLD,
+            String.valueOf(config.getActionAggregationThreshold()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_CHILD_TRACE_LIMIT, String.valueOf(config.getChildTraceLimit()));
+    HopConfig.getInstance()
+        .saveOption(
+            HOP_OTEL_CHILD_SAMPLING_RATIO, String.valueOf(config.getChildSamplingRatio()));
+    HopConfig.getInstance()
+        .saveOption(HOP_OTEL_JFR_EVENTS, String.valueOf(config.isJfrEvents()));
   }
 
   /** Initialize meter provider */
   public SdkMeterProvider createMeterProvider(OpenTelemetryConfig config) {
 
+    SdkMeterProviderBuilder builder = SdkMeterProvider.builder().setResource(getResource(config));
+
+    // Each target has its own periodic reader, a slow backend does not delay the others
+    for (ExporterTarget target : getExporterTargets(config, ExporterMetrics.SIGNAL_METRICS)) {
+      MetricExporter exporter = createMetricExporter(config, target);
+      builder.registerMetricReader(
+          PeriodicMetricReader.builder(exporterMetrics.wrap(exporter, target.getName()))
+              .setInterval(config.getMetricExportInterval())
+              .build());
+    }
+    // .registerMetricReader(PeriodicMetricReader.create(LoggingMetricExporter.create()))
+
+    // Durations are aggregated in base-2 exponential buckets, for accurate percentiles
+    if (!OpenTelemetryConfig.HISTOGRAM_EXPLICIT.equalsIgnoreCase(
+        config.getHistogramAggregation())) {
+      builder.registerView(
+          InstrumentSelector.builder()
+              .setType(InstrumentType.HISTOGRAM)
+              .setName("*.duration")
+              .build(),
+          View.builder().setAggregation(Aggregation.base2ExponentialBucketHistogram()).build());
+    }
+
+    // Serve the metrics to Prometheus, rendered by the threads of the HTTP server on scrape
+    if (config.getPrometheusPort() > 0) {
+      try {
+        builder.registerMetricReader(
+            PrometheusHttpServer.builder()
+                .setHost(config.getPrometheusHost())
+                .setPort(config.getPrometheusPort())
+                .build());
+      } catch (RuntimeException e) {
+        LogChannel.GENERAL.logError(
+            "Unable to start Prometheus scrape endpoint on port " + config.getPrometheusPort(), e);
+      }
+    }
+
+    return builder.build();
+  }
+
+  /** Create the metric exporter of a target. */
+  protected MetricExporter createMetricExporter(
+      OpenTelemetryConfig config, ExporterTarget target) {
+
     MetricExporter exporter = null;
-    if ("grpc".equalsIgnoreCase(config.getProtocol())) {
+    if ("grpc".equalsIgnoreCase(target.getProtocol())) {
       // Create an OTLP metric exporter via gRPC
       exporter =
           OtlpGrpcMetricExporter.builder()
-              .setEndpoint(config.getEndpoint())
-              .setTimeout(config.getTimeout())
-              .setHeaders(config::getHeaders)
+              .setEndpoint(target.getEndpoint())
+              .setTimeout(target.getTimeout())
+              .setHeaders(target::getHeaders)
               .build();
+    } else if ("file".equalsIgnoreCase(target.getProtocol())) {
+      // Create an OTLP metric exporter writing to local files
+      exporter = new OtlpFileMetricExporter(createFileWriter(config, target, "metrics"));
     } else {
       // Create an OTLP metric exporter via HTTP
       exporter =
           OtlpHttpMetricExporter.builder()
-              .setEndpoint(config.getEndpoint() + "/v1/metrics")
-              .setTimeout(config.getTimeout())
-              .setHeaders(config::getHeaders)
+              .setEndpoint(target.getEndpoint() + "/v1/metrics")
+              .setTimeout(target.getTimeout())
+              .setHeaders(target::getHeaders)
               .build();
     }
 
-    return SdkMeterProvider.builder()
-        .setResource(getResource(config))
-        .registerMetricReader(PeriodicMetricReader.builder(exporter).build())
-        // .registerMetricReader(PeriodicMetricReader.create(LoggingMetricExporter.create()))
-        .build();
+    if (bufferedExporter != null && ExporterTarget.DEFAULT.equals(target.getName())) {
+      exporter = bufferedExporter.wrap(exporter);
+    }
+    return exporter;
   }
 
   /** Initialize tracer provider */
-  public SdkTracerProvider createTracerProvider(OpenTelemetryConfig config) {
+  public SdkTracerProvider createTracerProvider(
+      OpenTelemetryConfig config, MeterProvider meterProvider) {
+
+    SdkTracerProviderBuilder builder =
+        SdkTracerProvider.builder()
+            .setResource(getResource(config))
+            // Root executions are sampled on their trace id, with the ratio of their rule
+            .setSampler(Sampler.parentBased(sampler));
+
+    // Count the spans handed over to the targets, to report the dropped ones
+    builder.addSpanProcessor(exporterMetrics.countSpans());
+
+    // Each target has its own batch processor, with its own queue, thread and timeout
+    for (ExporterTarget target : getExporterTargets(config, ExporterMetrics.SIGNAL_TRACES)) {
+      SpanExporter exporter = createSpanExporter(config, target);
+      builder.addSpanProcessor(
+          BatchSpanProcessor.builder(exporterMetrics.wrap(exporter, target.getName()))
+              .setMaxQueueSize(config.getBatchMaxQueueSize())
+              .setMaxExportBatchSize(getMaxExportBatchSize(config))
+              .setScheduleDelay(config.getBatchScheduleDelay())
+              .setExporterTimeout(getExportTimeout(config, target))
+              .setMeterProvider(meterProvider)
+              .build());
+    }
+
+    return builder.build();
+  }
+
+  /** Create the span exporter of a target. */
+  protected SpanExporter createSpanExporter(OpenTelemetryConfig config, ExporterTarget target) {
 
     SpanExporter exporter = null;
-    if ("grpc".equalsIgnoreCase(config.getProtocol())) {
+    if ("grpc".equalsIgnoreCase(target.getProtocol())) {
       // Create an OTLP trace exporter via gRPC
       exporter =
           OtlpGrpcSpanExporter.builder()
-              .setEndpoint(config.getEndpoint())
-              .setTimeout(config.getTimeout())
-              .setHeaders(config::getHeaders)
+              .setEndpoint(target.getEndpoint())
+              .setTimeout(target.getTimeout())
+              .setHeaders(target::getHeaders)
               .build();
+    } else if ("file".equalsIgnoreCase(target.getProtocol())) {
+      // Create an OTLP trace exporter writing to local files
+      exporter = new OtlpFileSpanExporter(createFileWriter(config, target, "traces"));
     } else {
       // Create an OTLP trace exporter via HTTP
       exporter =
           OtlpHttpSpanExporter.builder()
-              .setEndpoint(config.getEndpoint() + "/v1/traces")
-              .setTimeout(config.getTimeout())
-              .setHeaders(config::getHeaders)
+              .setEndpoint(target.getEndpoint() + "/v1/traces")
+              .setTimeout(target.getTimeout())
+              .setHeaders(target::getHeaders)
               .build();
     }
 
-    return SdkTracerProvider.builder()
-        .setResource(getResource(config))
-        .addSpanProcessor(
-            BatchSpanProcessor.builder(exporter)
-                .setScheduleDelay(100, TimeUnit.MILLISECONDS)
-                .build())
-        .setSampler(Sampler.alwaysOn())
-        .build();
+    if (bufferedExporter != null && ExporterTarget.DEFAULT.equals(target.getName())) {
+      exporter = bufferedExporter.wrap(exporter);
+    }
+    return exporter;
   }
 
   /** Initialize logger provider */
-  public SdkLoggerProvider createLoggerProvider(OpenTelemetryConfig config) {
+  public SdkLoggerProvider createLoggerProvider(
+      OpenTelemetryConfig config, MeterProvider meterProvider) {
+
+    SdkLoggerProviderBuilder builder = SdkLoggerProvider.builder().setResource(getResource(config));
+
+    // Count the log records handed over to the targets, to report the dropped ones
+    builder.addLogRecordProcessor(exporterMetrics.countLogRecords());
+
+    // Each target has its own batch processor, with its own queue, thread and timeout
+    for (ExporterTarget target : getExporterTargets(config, ExporterMetrics.SIGNAL_LOGS)) {
+      LogRecordExporter exporter = createLogRecordExporter(config, target);
+      builder.addLogRecordProcessor(
+          BatchLogRecordProcessor.builder(exporterMetrics.wrap(exporter, target.getName()))
+              .setMaxQueueSize(config.getBatchMaxQueueSize())
+              .setMaxExportBatchSize(getMaxExportBatchSize(config))
+              .setScheduleDelay(config.getBatchScheduleDelay())
+              .setExporterTimeout(getExportTimeout(config, target))
+              .setMeterProvider(meterProvider)
+              .build());
+    }
+
+    return builder.build();
+  }
+
+  /** Create the log record exporter of a target. */
+  protected LogRecordExporter createLogRecordExporter(
+      OpenTelemetryConfig config, ExporterTarget target) {
 
     LogRecordExporter exporter = null;
-    if ("grpc".equalsIgnoreCase(config.getProtocol())) {
+    if ("grpc".equalsIgnoreCase(target.getProtocol())) {
       // Create an OTLP log exporter via gRPC
       exporter =
           OtlpGrpcLogRecordExporter.builder()
-              .setEndpoint(config.getEndpoint())
-              .setTimeout(config.getTimeout())
-              .setHeaders(() -> config.getHeaders())
+              .setEndpoint(target.getEndpoint())
+              .setTimeout(target.getTimeout())
+              .setHeaders(target::getHeaders)
               .build();
+    } else if ("file".equalsIgnoreCase(target.getProtocol())) {
+      // Create an OTLP log exporter writing to local files
+      exporter = new OtlpFileLogRecordExporter(createFileWriter(config, target, "logs"));
     } else {
       // Create an OTLP log exporter via HTTP
       exporter =
           OtlpHttpLogRecordExporter.builder()
-              .setEndpoint(config.getEndpoint() + "/v1/logs")
-              .setTimeout(config.getTimeout())
-              .setHeaders(config::getHeaders)
+              .setEndpoint(target.getEndpoint() + "/v1/logs")
+              .setTimeout(target.getTimeout())
+              .setHeaders(target::getHeaders)
               .build();
     }
 
-    return SdkLoggerProvider.builder()
-        .setResource(getResource(config))
-        .addLogRecordProcessor(BatchLogRecordProcessor.builder(exporter).build())
-        .build();
+    if (bufferedExporter != null && ExporterTarget.DEFAULT.equals(target.getName())) {
+      exporter = bufferedExporter.wrap(exporter);
+    }
+    return exporter;
+  }
+
+  /**
+   * Gets the targets receiving a signal, the default target of the configured endpoint first.
+   *
+   * <p>The default target receives all signals, the additional targets only the signals they
+   * select.
+   */
+  protected List<ExporterTarget> getExporterTargets(OpenTelemetryConfig config, String signal) {
+    List<ExporterTarget> targets = new ArrayList<>();
+    for (ExporterTarget target : getAllExporterTargets(config)) {
+      if (target.hasSignal(signal)) {
+        targets.add(target);
+      }
+    }
+    return targets;
+  }
+
+  /** Gets all the targets, the default target of the configured endpoint first. */
+  protected List<ExporterTarget> getAllExporterTargets(OpenTelemetryConfig config) {
+    List<ExporterTarget> targets = new ArrayList<>();
+    if (StringUtils.isNotEmpty(config.getEndpoint())) {
+      targets.add(
+          new ExporterTarget(
+              ExporterTarget.DEFAULT,
+              ExporterTarget.ALL_SIGNALS,
+              config.getProtocol(),
+              config.getEndpoint(),
+              config.getTimeout(),
+              config.getHeaders()));
+    }
+    targets.addAll(config.getExporterTargets());
+    return targets;
+  }
+
+  /** Create the writer of the OTLP files of a signal, in the directory of the target endpoint. */
+  protected OtlpFileWriter createFileWriter(
+      OpenTelemetryConfig config, ExporterTarget target, String signal) {
+    String directory = StringUtils.removeStart(target.getEndpoint(), "file://");
+    return new OtlpFileWriter(Path.of(directory), signal, config);
+  }
+
+  /** A batch processor waits at most for the timeout of its target. */
+  protected Duration getExportTimeout(OpenTelemetryConfig config, ExporterTarget target) {
+    if (ExporterTarget.DEFAULT.equals(target.getName())) {
+      return config.getBatchExportTimeout();
+    }
+    return target.getTimeout();
+  }
+
+  /** The export batch size of a batch processor can not exceed its queue size. */
+  protected int getMaxExportBatchSize(OpenTelemetryConfig config) {
+    return Math.min(config.getBatchMaxExportBatchSize(), config.getBatchMaxQueueSize());
   }
 
   /** Build common resource attributes for all spans and metrics */
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.exporter.internal.marshal.Marshaler;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.logging.LogChannel;
+
+/**
+ * Write OTLP export requests of a signal to local files, rotated by size and age.
+ *
+ * <p>Requests are written as OTLP-JSON lines, or as length-delimited protobuf messages, through a
+ * buffered file channel optionally compressed with gzip. Files are named after the signal, the
+ * creation time and the process id, so several Hop processes can share the same directory.
+ *
+ * <p>Requests are serialized by the OTLP marshalers of {@code io.opentelemetry.exporter.internal},
+ * not a public API of OpenTelemetry: the version is pinned in the pom and checked by the tests.
+ */
+public class OtlpFileWriter implements Closeable {
+
+  private static final ILogChannel log = new LogChannel("OpenTelemetry");
+
+  public static final String FORMAT_JSON = "json";
+  public static final String FORMAT_PROTOBUF = "protobuf";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final DateTimeFormatter TIMESTAMP =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS");
+
+  private final Path directory;
+  private final String signal;
+  private final boolean json;
+  private final boolean gzip;
+  private final long maxSize;
+  private final Duration maxAge;
+
+  private final ByteArrayOutputStream request = new ByteArrayOutputStream(BUFFER_SIZE);
+  private FileChannel channel;
+  private OutputStream output;
+  private long openTime;
+
+  /**
+   * @param directory the directory of the files
+   * @param signal the signal, used as prefix of the file names
+   * @param config the configuration of the format, compression and rotation
+   */
+  public OtlpFileWriter(Path directory, String signal, OpenTelemetryConfig config) {
+    this.directory = directory;
+    this.signal = signal;
+    this.json = !FORMAT_PROTOBUF.equalsIgnoreCase(config.getFileFormat());
+    this.gzip = config.isFileCompression();
+    this.maxSize = config.getFileMaxSize() * 1024L * 1024L;
+    this.maxAge = config.getFileMaxAge();
+  }
+
+  /** Write an export request, the file is rotated first if it is too large or too old. */
+  public synchronized CompletableResultCode write(Marshaler marshaler) {
+    try {
+      request.reset();
+      if (json) {
+        marshaler.writeJsonTo(request);
+        request.write('\n');
+      } else {
+        writeVarint(request, marshaler.getBinarySerializedSize());
+        marshaler.writeBinaryTo(request);
+      }
+
+      if (output == null || isRotationDue()) {
+        rotate();
+      }
+      request.writeTo(output);
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      log.logError("Unable to write OpenTelemetry " + signal + " to " + directory, e);
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  private boolean isRotationDue() throws IOException {
+    if (maxSize > 0 && channel.size() >= maxSize) {
+      return true;
+    }
+    return !maxAge.isZero() && System.currentTimeMillis() - openTime >= maxAge.toMillis();
+  }
+
+  private void rotate() throws IOException {
+    closeFile();
+
+    Files.createDirectories(directory);
+    String name =
+        signal
+            + "-"
+            + LocalDateTime.now().format(TIMESTAMP)
+            + "-"
+            + ProcessHandle.current().pid()
+            + (json ? ".jsonl" : ".binpb")
+            + (gzip ? ".gz" : "");
+    channel =
+        FileChannel.open(
+            directory.resolve(name),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    output = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    if (gzip) {
+      output = new GZIPOutputStream(output, BUFFER_SIZE, true);
+    }
+    openTime = System.currentTimeMillis();
+  }
+
+  private static void writeVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  public synchronized CompletableResultCode flush() {
+    try {
+      if (output != null) {
+        output.flush();
+      }
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  private void closeFile() throws IOException {
+    if (output != null) {
+      output.close();
+      output = null;
+      channel = null;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeFile();
+  }
+}
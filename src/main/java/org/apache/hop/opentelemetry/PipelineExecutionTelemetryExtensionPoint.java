@@ -19,31 +19,31 @@ package org.apache.hop.opentelemetry;
 
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.logs.Logger;
-import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.metrics.LongCounter;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.semconv.OtelAttributes;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
 import org.apache.hop.core.IExtensionData;
-import org.apache.hop.core.Result;
 import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.extension.ExtensionPoint;
 import org.apache.hop.core.extension.IExtensionPoint;
-import org.apache.hop.core.logging.HopLogStore;
 import org.apache.hop.core.logging.ILogChannel;
-import org.apache.hop.core.logging.LoggingBuffer;
 import org.apache.hop.core.variables.IVariables;
 import org.apache.hop.execution.ExecutionType;
 import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.EngineMetrics;
 import org.apache.hop.pipeline.engine.IEngineComponent;
 import org.apache.hop.pipeline.engine.IPipelineEngine;
 import org.apache.hop.pipeline.engine.PipelineEnginePlugin;
-import org.apache.hop.pipeline.transform.ITransform;
 
 @ExtensionPoint(
     id = "PipelineTelemetryExtensionPoint",
@@ -58,10 +58,16 @@ public class PipelineExecutionTelemetryExtensionPoint extends ExecutionTelemetry
 
   private LongCounter pipeline_execution_count;
   private LongCounter transform_execution_count;
+  private DoubleHistogram pipeline_duration;
+  private DoubleHistogram transform_duration;
+  private EngineMetricsBridge engineMetricsBridge;
 
   public PipelineExecutionTelemetryExtensionPoint() {
     super();
+  }
 
+  @Override
+  protected void createInstruments() {
     pipeline_execution_count =
         GlobalOpenTelemetry.getMeter(INSTRUMENTATION_PIPELINE_SCOPE)
             .counterBuilder("pipeline.execution.count")
@@ -73,6 +79,21 @@ public class PipelineExecutionTelemetryExtensionPoint extends ExecutionTelemetry
             .counterBuilder("transformation.execution.count")
             .setDescription("The total number of times a transform has been executed.")
             .build();
+
+    pipeline_duration =
+        createDurationHistogram(
+            INSTRUMENTATION_PIPELINE_SCOPE,
+            "pipeline.duration",
+            "The duration of the executions of a pipeline.");
+
+    transform_duration =
+        createDurationHistogram(
+            INSTRUMENTATION_TRANSFORM_SCOPE,
+            "transform.duration",
+            "The duration of the executions of a transform.");
+
+    engineMetricsBridge =
+        new EngineMetricsBridge(GlobalOpenTelemetry.getMeter(INSTRUMENTATION_TRANSFORM_SCOPE));
   }
 
   @Override
@@ -86,6 +107,18 @@ public class PipelineExecutionTelemetryExtensionPoint extends ExecutionTelemetry
       return;
     }
 
+    // Flight recorder events, whether telemetry is exported or not
+    //
+    if (OpenTelemetryPlugin.getInstance().getConfig().isJfrEvents()) {
+      ExecutionEvents.observe(pipeline);
+    }
+
+    // Telemetry disabled, or the SDK is not available
+    //
+    if (!isTelemetryReady(pipeline)) {
+      return;
+    }
+
     // Acquiring a tracer
     Tracer pipelineTracer = GlobalOpenTelemetry.getTracer(INSTRUMENTATION_PIPELINE_SCOPE);
 
@@ -96,28 +129,73 @@ public class PipelineExecutionTelemetryExtensionPoint extends ExecutionTelemetry
     // Define context
     Context context = getContext(pipeline);
 
-    // Create pipeline trace
-    final Span pipelineSpan =
-        pipelineTracer
-            .spanBuilder(pipeline.getPipelineMeta().getName())
-            .setSpanKind(SpanKind.SERVER)
-            .setParent(context)
-            .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Pipeline.name())
-            .setAttribute(HopAttributes.PIPELINE_ENGINE, pipelinePlugin.id())
-            .setAttribute(
-                HopAttributes.PIPELINE_RUN_CONFIGURATION,
-                pipeline.getPipelineRunConfiguration().getName())
-            .setAttribute(HopAttributes.PIPELINE_CONTAINER_ID, pipeline.getContainerId())
-            .setAttribute(HopAttributes.PIPELINE_EXECUTION_ID, pipeline.getLogChannelId())
-            .setAttribute(HopAttributes.PIPELINE_FILE_PATH, pipelineMeta.getFilename())
-            .setAttribute(HopAttributes.PIPELINE_VERSION, pipelineMeta.getPipelineVersion())
-            .setStartTimestamp(pipeline.getExecutionStartDate().toInstant())
-            .startSpan();
-
-    this.addProjectAndEnvironment(variables, pipelineSpan);
+    // A root execution starts a new trace, a top-level execution has no parent in this process but
+    // may continue the trace of a remote parent
+    boolean root = !Span.fromContext(context).getSpanContext().isValid();
+    boolean topLevel = isTopLevel(pipeline);
+
+    // Decide if the pipeline is traced
+    ExecutionSampler sampler = OpenTelemetryPlugin.getInstance().getSampler();
+    boolean traced =
+        sampler.shouldSample(
+            context,
+            pipelineMeta.getName(),
+            variables,
+            pipeline.getPipelineRunConfiguration().getName());
+
+    // Beyond the first child executions launched by a transform, only a ratio is traced, and the
+    // child executions of a folded action are folded with it
+    ExecutionAggregate children = getChildAggregate(pipeline);
+    boolean folded =
+        traced
+            && (getActionAggregate(pipeline) != null
+                || children != null && !sampler.shouldSampleChild(children));
+
+    final Span pipelineSpan;
+    if (traced && !folded) {
+      // Create pipeline trace, a root execution is sampled on its trace id when started
+      pipelineSpan =
+          createPipelineSpanBuilder(pipelineTracer, context, pipeline, pipelinePlugin)
+              .setStartTimestamp(pipeline.getExecutionStartDate().toInstant())
+              .setAllAttributes(getProjectAndEnvironment(variables))
+              .startSpan();
+    } else {
+      // Propagate the decision to child executions without building any span
+      pipelineSpan = sampler.createUnsampledSpan(context);
+    }
+    boolean sampled = pipelineSpan.getSpanContext().isSampled();
+
+    LogRecordBridge logBridge = OpenTelemetryPlugin.getInstance().getLogBridge();
+    if (sampled) {
+      // Stream pipeline log
+      logBridge.register(
+          pipeline.getLogChannelId(),
+          INSTRUMENTATION_PIPELINE_SCOPE,
+          context.with(pipelineSpan),
+          Attributes.builder()
+              .put(HopAttributes.PIPELINE_CONTAINER_ID, pipeline.getContainerId())
+              .put(HopAttributes.PIPELINE_EXECUTION_ID, pipeline.getLogChannelId())
+              .build());
+    }
 
     pipeline.getExtensionDataMap().put(SPAN, pipelineSpan);
 
+    // Propagate the trace to child executions in other processes
+    injectContext(context.with(pipelineSpan), pipeline);
+
+    // Attribute the resources used by the transform threads to the pipeline
+    ExecutionResourceMonitor resourceMonitor =
+        OpenTelemetryPlugin.getInstance().getResourceMonitor();
+    resourceMonitor.register(
+        pipeline.getLogChannelId(),
+        Attributes.of(HopAttributes.PIPELINE_NAME, pipelineMeta.getName()),
+        sampled ? pipelineSpan : null);
+
+    // Observe transform row counters while the pipeline is running
+    TransformMetricsObserver transformMetrics =
+        OpenTelemetryPlugin.getInstance().getTransformMetrics();
+    transformMetrics.register(pipeline);
+
     // Set pipeline span to all transforms
     for (IEngineComponent component : pipeline.getComponents()) {
       if (component instanceof IExtensionData) {
@@ -126,88 +204,285 @@ public class PipelineExecutionTelemetryExtensionPoint extends ExecutionTelemetry
     }
 
     // Pipeline trace
+    TelemetryExecutor telemetryExecutor = OpenTelemetryPlugin.getInstance().getTelemetryExecutor();
     pipeline.addExecutionFinishedListener(
         engine -> {
-          Result result = engine.getResult();
-          pipelineSpan.setStatus(
-              pipeline.isStopped() || result.getNrErrors() > 0 ? StatusCode.ERROR : StatusCode.OK,
-              pipeline.getStatusDescription());
+          long listenerStart = System.nanoTime();
+          transformMetrics.unregister(pipeline);
+          ExecutionResourceMonitor.Usage usage =
+              resourceMonitor.unregister(engine.getLogChannelId());
+
+          // Stop sampling the row sets
+          RowSetSampler rowSetSampler =
+              (RowSetSampler) pipeline.getExtensionDataMap().get(ROWSET_SAMPLER);
+          if (rowSetSampler != null) {
+            rowSetSampler.close();
+          }
 
-          if (engine.getExecutionEndDate() != null) {
-            pipelineSpan.end(engine.getExecutionEndDate().toInstant());
+          // Transforms traced in real time when the engine started their threads
+          @SuppressWarnings("unchecked")
+          Map<IEngineComponent, Span> transformSpans =
+              (Map<IEngineComponent, Span>)
+                  pipeline.getExtensionDataMap().getOrDefault(TRANSFORM_SPANS, Map.of());
+
+          // Snapshot the state needed by the telemetry, the execution thread moves on
+          Map<IEngineComponent, ComponentSnapshot> components =
+              ComponentSnapshot.of(pipelineMeta, engine.getComponents());
+          EngineMetrics engineMetrics = engine.getEngineMetrics();
+          boolean error = isError(engine);
+          String statusDescription = engine.getStatusDescription();
+          Date startDate = engine.getExecutionStartDate();
+          Date endDate = engine.getExecutionEndDate();
+
+          // Summarized on the span of the parent transform, before it ends
+          if (children != null) {
+            children.record(getDuration(startDate, endDate), error);
           }
 
-          // Acquiring a tracer
-          Tracer transformTracer = GlobalOpenTelemetry.getTracer(INSTRUMENTATION_TRANSFORM_SCOPE);
+          telemetryExecutor.execute(
+              () -> {
+                BottleneckAnalysis analysis = null;
+                if (sampled || root) {
+                  analysis =
+                      BottleneckAnalysis.analyze(pipelineMeta, components.values(), rowSetSampler);
+                }
+
+                if (sampled) {
+                  // Acquiring a tracer
+                  Tracer transformTracer =
+                      GlobalOpenTelemetry.getTracer(INSTRUMENTATION_TRANSFORM_SCOPE);
+
+                  // Create trace after execution of other components
+                  Context transformContext = context.with(pipelineSpan);
+                  for (Map.Entry<IEngineComponent, ComponentSnapshot> entry :
+                      components.entrySet()) {
+                    ComponentSnapshot component = entry.getValue();
+
+                    Span transformSpan = transformSpans.get(entry.getKey());
+                    if (transformSpan != null) {
+                      // Transform that never finished
+                      if (transformSpan.isRecording()) {
+                        endTransformSpan(transformSpan, component, null);
+                      }
+                      continue;
+                    }
+
+                    // In Beam context execution start date is null, a span would be meaningless
+                    if (component.getExecutionStartDate() == null) {
+                      pipelineSpan.addEvent(
+                          "Transform",
+                          getTransformMetrics(component).toBuilder()
+                              .put(HopAttributes.TRANSFORM_NAME, component.getName())
+                              .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+                              .put(
+                                  HopAttributes.TRANSFORM_PLUGIN_ID,
+                                  component.getTransformPluginId())
+                              .build());
+                      continue;
+                    }
+
+                    transformSpan =
+                        startTransformSpan(
+                            transformTracer,
+                            transformContext,
+                            component,
+                            component.getExecutionStartDate().toInstant());
+
+                    this.addProjectAndEnvironment(variables, transformSpan);
+
+                    Instant executionEndDate = null;
+                    if (component.getExecutionEndDate() != null) {
+                      executionEndDate = component.getExecutionEndDate().toInstant();
+                    }
+
+                    endTransformSpan(transformSpan, component, executionEndDate);
+                  }
+
+                  if (rowSetSampler != null) {
+                    addRowSetEvents(pipelineSpan, rowSetSampler);
+                  }
+                  if (analysis != null) {
+                    analysis.addTo(pipelineSpan);
+                  }
+                  TransformCopySummary.summarize(components.values()).addTo(pipelineSpan);
+                  addResourceUsage(pipelineSpan, usage);
+
+                  endPipelineSpan(pipelineSpan, error, statusDescription, endDate);
+                } else if (root || folded) {
+                  // Keep pipelines in error or too slow
+                  keepPipeline(
+                      pipelineTracer,
+                      context,
+                      engine,
+                      pipelinePlugin,
+                      variables,
+                      sampler,
+                      analysis,
+                      folded,
+                      error,
+                      statusDescription,
+                      startDate,
+                      endDate);
+                }
+
+                // Record metrics of the transforms, whatever the sampling decision
+                for (ComponentSnapshot component : components.values()) {
+                  recordTransformMetrics(component);
+                }
+                engineMetricsBridge.record(
+                    pipelineMeta, engineMetrics, components.values(), pipelinePlugin.id());
+
+                // Increment metrics
+                pipeline_execution_count.add(
+                    1,
+                    Attributes.builder()
+                        .put(HopAttributes.PIPELINE_ENGINE, pipelinePlugin.id())
+                        .build());
+                pipeline_duration.record(
+                    getDuration(startDate, endDate),
+                    Attributes.builder()
+                        .put(HopAttributes.PIPELINE_ENGINE, pipelinePlugin.id())
+                        .put(HopAttributes.EXECUTION_STATUS, getStatus(error))
+                        .build());
+
+                // Export the telemetry of a top-level execution without waiting for the next batch
+                if (topLevel) {
+                  OpenTelemetryPlugin.getInstance().flush();
+                }
+              });
+
+          // Stop streaming pipeline log
+          logBridge.unregister(engine.getLogChannelId());
+
+          telemetryExecutor.recordListener(ExecutionType.Pipeline, listenerStart);
+        });
 
-          // Create transform trace after execution
-          Context transformContext = context.with(pipelineSpan);
-          for (IEngineComponent component : pipeline.getComponents()) {
+    // Add event if pipeline is stopped
+    pipeline.addExecutionStoppedListener(engine -> pipelineSpan.addEvent("Stop pipeline"));
+  }
 
-            String pluginId = null;
-            if (component instanceof ITransform) {
-              pluginId = ((ITransform) component).getTransformPluginId();
-            }
+  protected SpanBuilder createPipelineSpanBuilder(
+      Tracer tracer,
+      Context context,
+      IPipelineEngine<PipelineMeta> pipeline,
+      PipelineEnginePlugin pipelinePlugin) {
+    PipelineMeta pipelineMeta = pipeline.getPipelineMeta();
 
-            // In Beam context execution start date is null
-            Instant executionStartDate = null;
-            if (component.getExecutionStartDate() != null) {
-              executionStartDate = component.getExecutionStartDate().toInstant();
-            }
+    return tracer
+        .spanBuilder(pipelineMeta.getName())
+        .setSpanKind(SpanKind.SERVER)
+        .setParent(context)
+        .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Pipeline.name())
+        .setAttribute(HopAttributes.PIPELINE_ENGINE, pipelinePlugin.id())
+        .setAttribute(
+            HopAttributes.PIPELINE_RUN_CONFIGURATION,
+            pipeline.getPipelineRunConfiguration().getName())
+        .setAttribute(HopAttributes.PIPELINE_CONTAINER_ID, pipeline.getContainerId())
+        .setAttribute(HopAttributes.PIPELINE_EXECUTION_ID, pipeline.getLogChannelId())
+        .setAttribute(HopAttributes.PIPELINE_FILE_PATH, pipelineMeta.getFilename())
+        .setAttribute(HopAttributes.PIPELINE_VERSION, pipelineMeta.getPipelineVersion());
+  }
 
-            Span transformSpan =
-                transformTracer
-                    .spanBuilder(component.getName())
-                    .setSpanKind(SpanKind.SERVER)
-                    .setParent(transformContext)
-                    .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Transform.name())
-                    .setAttribute(HopAttributes.TRANSFORM_PLUGIN_ID, pluginId)
-                    .setStartTimestamp(executionStartDate)
-                    .startSpan();
+  /** Count a transform execution and record its duration. */
+  protected void recordTransformMetrics(ComponentSnapshot component) {
+    String pluginId = component.getTransformPluginId();
+    transform_execution_count.add(
+        1,
+        Attributes.builder()
+            .put(HopAttributes.TRANSFORM_PLUGIN_ID, pluginId)
+            .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+            .build());
+
+    // In Beam context execution start date is null
+    if (component.getExecutionStartDate() != null) {
+      transform_duration.record(
+          getDuration(component.getExecutionStartDate(), component.getExecutionEndDate()),
+          Attributes.builder()
+              .put(HopAttributes.TRANSFORM_PLUGIN_ID, pluginId)
+              .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+              .put(HopAttributes.EXECUTION_STATUS, getStatus(component.getErrors() > 0))
+              .build());
+    }
+  }
 
-            if (component.getExecutionEndDate() != null) {
-              transformSpan.end(component.getExecutionEndDate().toInstant());
-            }
+  /** Summarize the fill level of each row set in an event of the pipeline span. */
+  protected void addRowSetEvents(Span span, RowSetSampler sampler) {
+    long duration = sampler.getDuration();
+    for (RowSetSampler.Stats stats : sampler.getStats()) {
+      if (stats.getSamples() == 0) {
+        continue;
+      }
+      span.addEvent(
+          "Row set",
+          stats.getAttributes().toBuilder()
+              .remove(HopAttributes.PIPELINE_NAME)
+              .put(HopAttributes.ROWSET_CAPACITY, sampler.getCapacity())
+              .put(HopAttributes.ROWSET_FILL_AVERAGE, stats.getAverage())
+              .put(HopAttributes.ROWSET_FILL_MAX, stats.getMax())
+              .put(HopAttributes.ROWSET_BLOCKED_PUT, Math.round(stats.getFullRatio() * duration))
+              .put(HopAttributes.ROWSET_BLOCKED_GET, Math.round(stats.getEmptyRatio() * duration))
+              .build());
+    }
+  }
 
-            transformSpan.setStatus(component.getErrors() > 0 ? StatusCode.ERROR : StatusCode.OK);
+  protected boolean isError(IPipelineEngine<PipelineMeta> engine) {
+    return engine.isStopped() || engine.getResult().getNrErrors() > 0;
+  }
 
-            this.addProjectAndEnvironment(variables, transformSpan);
+  /** Set the status of the pipeline span and end it at the end of the execution. */
+  protected void endPipelineSpan(Span span, boolean error, String statusDescription, Date end) {
+    span.setStatus(error ? StatusCode.ERROR : StatusCode.OK, statusDescription);
 
-            transform_execution_count.add(
-                1, Attributes.builder().put(HopAttributes.TRANSFORM_PLUGIN_ID, pluginId).build());
-          }
+    if (end != null) {
+      span.end(end.toInstant());
+    } else {
+      span.end();
+    }
+  }
 
-          // Increment metrics
-          pipeline_execution_count.add(
-              1,
-              Attributes.builder().put(HopAttributes.PIPELINE_ENGINE, pipelinePlugin.id()).build());
-
-          // Logs pipeline result
-          if (true) { // result.getLogText() != null) {
-
-            // Acquiring a logger
-            Logger logger =
-                GlobalOpenTelemetry.get().getLogsBridge().get(INSTRUMENTATION_PIPELINE_SCOPE);
-
-            // Capture the logging text after the execution...
-            //
-            LoggingBuffer loggingBuffer = HopLogStore.getAppender();
-            StringBuffer logTextBuffer = loggingBuffer.getBuffer(log.getLogChannelId(), false);
-
-            logger
-                .logRecordBuilder()
-                .setContext(context)
-                .setSeverity(Severity.INFO)
-                // .setBody(result.getLogText())
-                .setBody(logTextBuffer.toString())
-                // .setAttribute(COMPONENT_KEY, ExecutionType.Pipeline.name())
-                .setAttribute(HopAttributes.PIPELINE_CONTAINER_ID, engine.getContainerId())
-                .setAttribute(HopAttributes.PIPELINE_EXECUTION_ID, engine.getLogChannelId())
-                .emit();
-          }
-        });
+  /**
+   * Trace a pipeline that was not sampled, after the fact, if the sampler wants to keep it.
+   *
+   * <p>A root pipeline is kept in its own trace. A child pipeline dropped beyond the limit of its
+   * parent transform is kept under the transform span, and a child pipeline folded with its parent
+   * action under the summary span of the action.
+   */
+  protected void keepPipeline(
+      Tracer tracer,
+      Context context,
+      IPipelineEngine<PipelineMeta> engine,
+      PipelineEnginePlugin pipelinePlugin,
+      IVariables variables,
+      ExecutionSampler sampler,
+      BottleneckAnalysis analysis,
+      boolean folded,
+      boolean error,
+      String statusDescription,
+      Date startDate,
+      Date endDate) {
+    Instant start = startDate.toInstant();
+    Instant end = endDate != null ? endDate.toInstant() : Instant.now();
+
+    String reason =
+        folded
+            ? sampler.getChildKeepReason(error)
+            : sampler.getKeepReason(error, Duration.between(start, end));
+    if (reason == null) {
+      return;
+    }
 
-    // Add event if pipeline is stopped
-    pipeline.addExecutionStoppedListener(engine -> pipelineSpan.addEvent("Stop pipeline"));
+    SpanBuilder builder =
+        createPipelineSpanBuilder(tracer, context, engine, pipelinePlugin)
+            .setStartTimestamp(start)
+            .setAttribute(HopAttributes.SAMPLING_REASON, reason);
+    if (!folded) {
+      builder.setNoParent();
+    }
+    Span span = builder.startSpan();
+    this.addProjectAndEnvironment(variables, span);
+    if (analysis != null) {
+      analysis.addTo(span);
+    }
+    endPipelineSpan(span, error, statusDescription, endDate);
   }
 }
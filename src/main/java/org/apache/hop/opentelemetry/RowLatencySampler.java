@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import org.apache.hop.core.row.IRowMeta;
+import org.apache.hop.pipeline.transform.RowAdapter;
+
+/**
+ * Record the time per row of a transform copy, on one row out of N.
+ *
+ * <p>The time of a sampled row is the interval between this row and the next one read, or written
+ * for transforms without input. Listeners are called on the thread of the transform copy, so the
+ * state is not shared, and nothing is allocated for the rows that are not sampled.
+ */
+public class RowLatencySampler extends RowAdapter {
+
+  private final DoubleHistogram histogram;
+  private final Attributes attributes;
+  private final boolean input;
+  private final long interval;
+
+  private long rows;
+  private long start;
+
+  /**
+   * @param histogram the histogram of the time per row
+   * @param attributes the attributes of the transform
+   * @param input true to sample rows read, false to sample rows written
+   * @param interval the number of rows between two samples
+   */
+  public RowLatencySampler(
+      DoubleHistogram histogram, Attributes attributes, boolean input, long interval) {
+    this.histogram = histogram;
+    this.attributes = attributes;
+    this.input = input;
+    this.interval = Math.max(1, interval);
+  }
+
+  @Override
+  public void rowReadEvent(IRowMeta rowMeta, Object[] row) {
+    if (input) {
+      sample();
+    }
+  }
+
+  @Override
+  public void rowWrittenEvent(IRowMeta rowMeta, Object[] row) {
+    if (!input) {
+      sample();
+    }
+  }
+
+  private void sample() {
+    if (start != 0) {
+      histogram.record((System.nanoTime() - start) / 1e9, attributes);
+      start = 0;
+    }
+    if (++rows % interval == 0) {
+      start = System.nanoTime();
+    }
+  }
+}
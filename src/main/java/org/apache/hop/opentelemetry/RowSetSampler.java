@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.Const;
+import org.apache.hop.core.IRowSet;
+import org.apache.hop.pipeline.Pipeline;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+import org.apache.hop.pipeline.transform.ITransform;
+
+/**
+ * Sample periodically the fill level of the row sets connecting the transforms of a running
+ * pipeline.
+ *
+ * <p>In the local engine a transform blocks when putting rows into a full row set, or waits when
+ * getting rows from an empty one. The time blocked on put or get is estimated from the ratio of
+ * samples where the row set was full or empty. All pipelines are sampled by a single shared
+ * thread, transform threads are never involved.
+ *
+ * <p>The row set gauges are observed by the {@link TransformMetricsObserver} of the plugin, so
+ * concurrent executions of a pipeline are summed in a single callback.
+ */
+public class RowSetSampler implements AutoCloseable {
+
+  private static final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "OpenTelemetry row set sampler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Statistics of the samples of a row set. */
+  public static class Stats {
+    private final IRowSet rowSet;
+    private final Attributes attributes;
+    private long samples;
+    private long sum;
+    private int max;
+    private long full;
+    private long empty;
+
+    Stats(IRowSet rowSet, Attributes attributes) {
+      this.rowSet = rowSet;
+      this.attributes = attributes;
+    }
+
+    public Attributes getAttributes() {
+      return attributes;
+    }
+
+    public IRowSet getRowSet() {
+      return rowSet;
+    }
+
+    public synchronized long getSamples() {
+      return samples;
+    }
+
+    /** Gets the average number of rows in the row set. */
+    public synchronized double getAverage() {
+      return samples == 0 ? 0 : (double) sum / samples;
+    }
+
+    /** Gets the maximum number of rows in the row set. */
+    public synchronized int getMax() {
+      return max;
+    }
+
+    /** Gets the ratio of samples where the row set was full, the producer blocked on put. */
+    public synchronized double getFullRatio() {
+      return samples == 0 ? 0 : (double) full / samples;
+    }
+
+    /** Gets the ratio of samples where the row set was empty, the consumer waited on get. */
+    public synchronized double getEmptyRatio() {
+      return samples == 0 ? 0 : (double) empty / samples;
+    }
+
+    synchronized void sample(int capacity) {
+      int size = rowSet.size();
+      samples++;
+      sum += size;
+      max = Math.max(max, size);
+      if (size >= capacity) {
+        full++;
+      } else if (size == 0) {
+        empty++;
+      }
+    }
+  }
+
+  private final int capacity;
+  private final long startTime;
+  private final List<Stats> stats = new ArrayList<>();
+  private final ScheduledFuture<?> future;
+  private long endTime;
+
+  /**
+   * Start sampling the row sets of a pipeline whose transforms are initialized.
+   *
+   * @param pipeline the pipeline
+   * @param period the sampling period in milliseconds
+   */
+  public RowSetSampler(IPipelineEngine<PipelineMeta> pipeline, long period) {
+    this.capacity =
+        pipeline instanceof Pipeline localPipeline
+            ? localPipeline.getRowSetSize()
+            : Const.ROWS_IN_ROWSET;
+
+    // Each row set is the output of a transform copy
+    for (IEngineComponent component : pipeline.getComponents()) {
+      if (component instanceof ITransform transform) {
+        for (IRowSet rowSet : transform.getOutputRowSets()) {
+          Attributes attributes =
+              Attributes.builder()
+                  .put(HopAttributes.PIPELINE_NAME, pipeline.getPipelineMeta().getName())
+                  .put(HopAttributes.ROWSET_FROM, rowSet.getOriginTransformName())
+                  .put(HopAttributes.ROWSET_FROM_COPY, rowSet.getOriginTransformCopy())
+                  .put(HopAttributes.ROWSET_TO, rowSet.getDestinationTransformName())
+                  .put(HopAttributes.ROWSET_TO_COPY, rowSet.getDestinationTransformCopy())
+                  .build();
+          stats.add(new Stats(rowSet, attributes));
+        }
+      }
+    }
+
+
+    startTime = System.currentTimeMillis();
+    future = scheduler.scheduleAtFixedRate(this::sample, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  private void sample() {
+    for (Stats stat : stats) {
+      stat.sample(capacity);
+    }
+  }
+
+  /** Gets the statistics of the row sets. */
+  public List<Stats> getStats() {
+    return stats;
+  }
+
+  /** Gets the capacity of the row sets. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** Gets the duration in milliseconds during which the row sets were sampled. */
+  public long getDuration() {
+    return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+  }
+
+  /** Stop sampling, the statistics remain available. */
+  @Override
+  public void close() {
+    future.cancel(false);
+    if (endTime == 0) {
+      endTime = System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hop.core.Const;
+
+/**
+ * A sampling ratio applied to the executions of which the name, project or run configuration
+ * matches a regular expression.
+ *
+ * <p>The text form of a rule is <code>key:regex=ratio</code> where key is one of <code>name</code>,
+ * <code>project</code> or <code>run_configuration</code>, rules are separated by semicolons, i.e.:
+ * <code>name:Load.*=0.1;project:sandbox=0</code>.
+ */
+public class SamplingRule {
+
+  public enum Key {
+    NAME("name"),
+    PROJECT("project"),
+    RUN_CONFIGURATION("run_configuration");
+
+    private final String code;
+
+    Key(String code) {
+      this.code = code;
+    }
+
+    public String getCode() {
+      return code;
+    }
+
+    public static Key lookupCode(String code) {
+      for (Key key : values()) {
+        if (key.code.equalsIgnoreCase(code)) {
+          return key;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final Key key;
+  private final Pattern pattern;
+  private final double ratio;
+
+  /**
+   * @param key the key matched by the regular expression
+   * @param regex the regular expression
+   * @param ratio the sampling ratio, between 0 and 1
+   * @throws IllegalArgumentException if the regular expression or the ratio is invalid
+   */
+  public SamplingRule(Key key, String regex, double ratio) {
+    // Also rejects NaN
+    if (!(ratio >= 0 && ratio <= 1)) {
+      throw new IllegalArgumentException("Sampling ratio must be between 0 and 1: " + ratio);
+    }
+    this.key = key;
+    this.pattern = Pattern.compile(regex);
+    this.ratio = ratio;
+  }
+
+  public Key getKey() {
+    return key;
+  }
+
+  public String getRegex() {
+    return pattern.pattern();
+  }
+
+  public double getRatio() {
+    return ratio;
+  }
+
+  /**
+   * Check if the rule applies to an execution.
+   *
+   * @return true if the value of the rule key matches the regular expression
+   */
+  public boolean matches(String name, String project, String runConfiguration) {
+    String value =
+        switch (key) {
+          case NAME -> name;
+          case PROJECT -> project;
+          case RUN_CONFIGURATION -> runConfiguration;
+        };
+    return value != null && pattern.matcher(value).matches();
+  }
+
+  @Override
+  public String toString() {
+    return key.getCode() + ':' + pattern.pattern() + '=' + ratio;
+  }
+
+  /** Parse rules from their text form, invalid rules are ignored. */
+  public static List<SamplingRule> parse(String str) {
+    List<SamplingRule> rules = new ArrayList<>();
+    if (StringUtils.isBlank(str)) {
+      return rules;
+    }
+
+    for (String rule : str.split(";")) {
+      int colon = rule.indexOf(':');
+      int equal = rule.lastIndexOf('=');
+      if (colon <= 0 || equal <= colon) {
+        continue;
+      }
+
+      Key key = Key.lookupCode(rule.substring(0, colon).trim());
+      double ratio = Const.toDouble(rule.substring(equal + 1).trim(), -1);
+      if (key == null) {
+        continue;
+      }
+
+      try {
+        rules.add(new SamplingRule(key, rule.substring(colon + 1, equal).trim(), ratio));
+      } catch (IllegalArgumentException e) {
+        // Invalid regular expression or ratio out of range
+      }
+    }
+
+    return rules;
+  }
+
+  /** Format rules to their text form. */
+  public static String toString(List<SamplingRule> rules) {
+    return rules.stream().map(SamplingRule::toString).collect(Collectors.joining(";"));
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.logging.LogChannel;
+import org.apache.hop.execution.ExecutionType;
+
+/**
+ * Record the telemetry of finished executions off the execution threads.
+ *
+ * <p>The execution finished listeners only take a snapshot of the state they need and hand the
+ * spans and metrics over to background threads, so a parent workflow does not wait for the
+ * telemetry of its child pipelines. Each task runs on a virtual thread when the JVM supports them
+ * (Java 21), on a small pool of daemon threads otherwise. The number of waiting tasks is bounded:
+ * beyond it the telemetry of the execution is dropped and counted, the execution is never slowed
+ * down.
+ */
+public class TelemetryExecutor {
+
+  private static final ILogChannel log = new LogChannel("OpenTelemetry");
+
+  public static final String INSTRUMENTATION_TELEMETRY_SCOPE = "Telemetry";
+
+  private static final int THREADS = 2;
+  private static final int QUEUE_CAPACITY = 10000;
+
+  private final ExecutorService executor;
+  private final int capacity;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Object idle = new Object();
+  private volatile DoubleHistogram listenerDuration;
+
+  public TelemetryExecutor() {
+    this(QUEUE_CAPACITY);
+  }
+
+  TelemetryExecutor(int capacity) {
+    this.capacity = capacity;
+    this.executor = createExecutor();
+  }
+
+  /** A virtual thread per task when available, a pool of daemon threads otherwise. */
+  private static ExecutorService createExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // Before Java 21
+    }
+
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            THREADS,
+            THREADS,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "OpenTelemetry execution telemetry");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** Create the instruments, nothing is recorded before. */
+  public void bind(MeterProvider meterProvider) {
+    Meter meter = meterProvider.get(INSTRUMENTATION_TELEMETRY_SCOPE);
+    listenerDuration =
+        meter
+            .histogramBuilder("telemetry.listener.duration")
+            .setDescription("The time spent by the execution finished listeners on the execution.")
+            .setUnit("s")
+            .build();
+    meter
+        .upDownCounterBuilder("telemetry.queue.size")
+        .setDescription("The number of finished executions waiting for their telemetry.")
+        .setUnit("{execution}")
+        .buildWithCallback(measurement -> measurement.record(pending.get()));
+    meter
+        .counterBuilder("telemetry.dropped")
+        .setDescription("The number of finished executions of which the telemetry was dropped.")
+        .setUnit("{execution}")
+        .buildWithCallback(measurement -> measurement.record(dropped.get()));
+  }
+
+  /**
+   * Record the telemetry of a finished execution in the background.
+   *
+   * @return false if the telemetry was dropped, too many executions are waiting
+   */
+  public boolean execute(Runnable task) {
+    if (pending.incrementAndGet() > capacity) {
+      done();
+      dropped.incrementAndGet();
+      return false;
+    }
+    try {
+      executor.execute(
+          () -> {
+            try {
+              task.run();
+            } catch (Exception e) {
+              log.logError("Error recording OpenTelemetry of an execution", e);
+            } finally {
+              done();
+            }
+          });
+      return true;
+    } catch (RuntimeException e) {
+      done();
+      throw e;
+    }
+  }
+
+  private void done() {
+    if (pending.decrementAndGet() == 0) {
+      synchronized (idle) {
+        idle.notifyAll();
+      }
+    }
+  }
+
+  /** The number of finished executions of which the telemetry was dropped. */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Wait for the telemetry of the finished executions to be recorded, at most the given time.
+   *
+   * @return true if no telemetry is left to record
+   */
+  public boolean awaitIdle(Duration timeout) {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    synchronized (idle) {
+      while (pending.get() > 0) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Record the time spent by an execution finished listener on the execution thread.
+   *
+   * @param type the type of execution
+   * @param start the start time of the listener in nanoseconds
+   */
+  public void recordListener(ExecutionType type, long start) {
+    DoubleHistogram histogram = listenerDuration;
+    if (histogram != null) {
+      histogram.record(
+          (System.nanoTime() - start) / 1e9,
+          Attributes.of(HopAttributes.EXECUTION_TYPE, type.name()));
+    }
+  }
+
+  /** Wait for the queued telemetry to be recorded, at most the given time. */
+  public void shutdown(Duration timeout) {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measure the CPU time and the bytes allocated by the current thread between two points.
+ *
+ * <p>Both points must be called from the same thread, for example the thread of a transform copy
+ * from its started and finished listeners. A value is -1 if it is not supported by the JVM.
+ */
+public class ThreadResourceUsage {
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private long startCpuTime;
+  private long startAllocatedBytes;
+  private long cpuTime = -1;
+  private long allocatedBytes = -1;
+
+  /** Check if the JVM measures the CPU time or the allocated bytes of threads. */
+  public static boolean isSupported() {
+    return isCpuTimeSupported() || isAllocatedBytesSupported();
+  }
+
+  private static boolean isCpuTimeSupported() {
+    return threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+  }
+
+  private static boolean isAllocatedBytesSupported() {
+    return threads instanceof com.sun.management.ThreadMXBean sunThreads
+        && sunThreads.isThreadAllocatedMemorySupported()
+        && sunThreads.isThreadAllocatedMemoryEnabled();
+  }
+
+  private static long getCurrentCpuTime() {
+    return isCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static long getCurrentAllocatedBytes() {
+    if (isAllocatedBytesSupported()) {
+      return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  /** Start measuring on the current thread. */
+  public void start() {
+    startCpuTime = getCurrentCpuTime();
+    startAllocatedBytes = getCurrentAllocatedBytes();
+  }
+
+  /** Stop measuring on the current thread, which must be the thread that started. */
+  public void stop() {
+    long currentCpuTime = getCurrentCpuTime();
+    if (currentCpuTime >= 0 && startCpuTime >= 0) {
+      cpuTime = currentCpuTime - startCpuTime;
+    }
+    long currentAllocatedBytes = getCurrentAllocatedBytes();
+    if (currentAllocatedBytes >= 0 && startAllocatedBytes >= 0) {
+      allocatedBytes = currentAllocatedBytes - startAllocatedBytes;
+    }
+  }
+
+  /** Gets the CPU time in nanoseconds, or -1 if not measured. */
+  public long getCpuTime() {
+    return cpuTime;
+  }
+
+  /** Gets the number of bytes allocated, or -1 if not measured. */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+
+/**
+ * Summarize the copies of each transform of a finished pipeline launched with several copies.
+ *
+ * <p>The rows of a copy are the greater of the rows it read and wrote, including the rows read from
+ * or written to a file, database, etc. The skew is the ratio of the rows of the busiest copy to the
+ * average of the copies: 1 when the rows are evenly partitioned, the number of copies when a single
+ * copy did all the work.
+ */
+public class TransformCopySummary {
+
+  /** The summary of the copies of a transform. */
+  public record Copies(
+      String name, int copies, long sum, long min, long max, double skew, int slowestCopy) {}
+
+  private final List<Copies> transforms = new ArrayList<>();
+
+  private TransformCopySummary() {
+    super();
+  }
+
+  /**
+   * Summarize a finished pipeline.
+   *
+   * @param pipelineComponents the components of the pipeline
+   * @return the summary of the transforms with more than one copy
+   */
+  public static TransformCopySummary summarize(
+      Collection<? extends IEngineComponent> pipelineComponents) {
+    Map<String, List<IEngineComponent>> components = new LinkedHashMap<>();
+    for (IEngineComponent component : pipelineComponents) {
+      components.computeIfAbsent(component.getName(), name -> new ArrayList<>()).add(component);
+    }
+
+    TransformCopySummary summary = new TransformCopySummary();
+    for (Map.Entry<String, List<IEngineComponent>> entry : components.entrySet()) {
+      List<IEngineComponent> copies = entry.getValue();
+      if (copies.size() < 2) {
+        continue;
+      }
+
+      long sum = 0;
+      long min = Long.MAX_VALUE;
+      long max = 0;
+      long longest = -1;
+      int slowestCopy = 0;
+      for (IEngineComponent copy : copies) {
+        long rows = ExecutionTelemetry.getRows(copy);
+        sum += rows;
+        min = Math.min(min, rows);
+        max = Math.max(max, rows);
+        if (copy.getExecutionDuration() > longest) {
+          longest = copy.getExecutionDuration();
+          slowestCopy = copy.getCopyNr();
+        }
+      }
+      double skew = sum > 0 ? max * copies.size() / (double) sum : 1;
+      summary.transforms.add(
+          new Copies(entry.getKey(), copies.size(), sum, min, max, skew, slowestCopy));
+    }
+    return summary;
+  }
+
+  public List<Copies> getTransforms() {
+    return transforms;
+  }
+
+  /** Record the summary of each transform with several copies as an event. */
+  public void addTo(Span span) {
+    for (Copies copies : transforms) {
+      span.addEvent(
+          "Transform copies",
+          Attributes.builder()
+              .put(HopAttributes.TRANSFORM_NAME, copies.name())
+              .put(HopAttributes.TRANSFORM_COPIES, copies.copies())
+              .put(HopAttributes.TRANSFORM_ROWS_SUM, copies.sum())
+              .put(HopAttributes.TRANSFORM_ROWS_MIN, copies.min())
+              .put(HopAttributes.TRANSFORM_ROWS_MAX, copies.max())
+              .put(HopAttributes.TRANSFORM_COPY_SKEW, copies.skew())
+              .put(HopAttributes.TRANSFORM_SLOWEST_COPY, copies.slowestCopy())
+              .build());
+    }
+  }
+}
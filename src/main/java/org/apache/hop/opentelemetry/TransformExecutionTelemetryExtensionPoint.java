@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.apache.hop.opentelemetry.PipelineExecutionTelemetryExtensionPoint.INSTRUMENTATION_TRANSFORM_SCOPE;
+import static org.apache.hop.opentelemetry.PipelineExecutionTelemetryExtensionPoint.PIPELINE_LOGGING_FLAG;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleCounter;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hop.core.IExtensionData;
+import org.apache.hop.core.exception.HopException;
+import org.apache.hop.core.extension.ExtensionPoint;
+import org.apache.hop.core.extension.IExtensionPoint;
+import org.apache.hop.core.logging.ILogChannel;
+import org.apache.hop.core.variables.IVariables;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+import org.apache.hop.pipeline.transform.ITransform;
+
+/**
+ * Trace the transforms of a pipeline in real time.
+ *
+ * <p>The span of a transform is started when the transform starts and ended when it finishes, so
+ * work in progress is visible and the cost of creating spans is spread over the execution.
+ * Transform metrics are recorded when the pipeline is finished, whatever the sampling decision.
+ *
+ * <p>When row sampling is enabled, the time per row of each transform is recorded on one row out of
+ * N by a row listener. The fill level of the row sets is sampled periodically by a {@link
+ * RowSetSampler}, and the CPU time and heap allocations of each transform copy are measured on its
+ * thread. With runtime metrics, the threads of the transform copies are attributed to the pipeline
+ * by the {@link ExecutionResourceMonitor}, whether transform resources are measured or not.
+ *
+ * <p>The flight recorder events of the transforms are also registered here, whether telemetry is
+ * exported or not, since the transforms don't exist yet when the pipeline is prepared.
+ */
+@ExtensionPoint(
+    id = "TransformTelemetryExtensionPoint",
+    description = "Trace execution of the transforms of a pipeline for OpenTelemetry",
+    extensionPointId = "PipelineStartThreads")
+public class TransformExecutionTelemetryExtensionPoint extends ExecutionTelemetry
+    implements IExtensionPoint<IPipelineEngine<PipelineMeta>> {
+
+  private DoubleHistogram row_duration;
+  private DoubleCounter transform_cpu_time;
+  private LongCounter transform_allocated_bytes;
+
+  public TransformExecutionTelemetryExtensionPoint() {
+    super();
+  }
+
+  @Override
+  protected void createInstruments() {
+    row_duration =
+        createDurationHistogram(
+            INSTRUMENTATION_TRANSFORM_SCOPE,
+            "transform.row.duration",
+            "The time per row of a transform, sampled on one row out of N.");
+
+    transform_cpu_time =
+        GlobalOpenTelemetry.getMeter(INSTRUMENTATION_TRANSFORM_SCOPE)
+            .counterBuilder("transform.cpu.time")
+            .ofDoubles()
+            .setDescription("The CPU time used by the threads of the transforms.")
+            .setUnit("s")
+            .build();
+
+    transform_allocated_bytes =
+        GlobalOpenTelemetry.getMeter(INSTRUMENTATION_TRANSFORM_SCOPE)
+            .counterBuilder("transform.memory.allocated")
+            .setDescription("The bytes allocated in the heap by the threads of the transforms.")
+            .setUnit("By")
+            .build();
+  }
+
+  @Override
+  public void callExtensionPoint(
+      ILogChannel log, IVariables variables, IPipelineEngine<PipelineMeta> pipeline)
+      throws HopException {
+
+    // Prevent doing observability on the logging pipeline
+    if (pipeline.getExtensionDataMap().get(PIPELINE_LOGGING_FLAG) != null) {
+      return;
+    }
+
+    // Flight recorder events, whether telemetry is exported or not
+    if (OpenTelemetryPlugin.getInstance().getConfig().isJfrEvents()) {
+      ExecutionEvents.observeTransforms(pipeline);
+    }
+
+    // Only pipelines observed when preparing execution
+    Span pipelineSpan = (Span) pipeline.getExtensionDataMap().get(SPAN);
+    if (pipelineSpan == null || !isTelemetryReady()) {
+      return;
+    }
+
+    OpenTelemetryConfig config = OpenTelemetryPlugin.getInstance().getConfig();
+
+    // Sample the time per row of the transforms, whatever the sampling decision
+    if (config.getRowSamplingInterval() > 0) {
+      addRowLatencySamplers(pipeline, config.getRowSamplingInterval());
+    }
+
+    // Sample the fill level of the row sets, stopped when the pipeline is finished
+    if (config.getRowSetSamplingPeriod() > 0) {
+      RowSetSampler rowSetSampler = new RowSetSampler(pipeline, config.getRowSetSamplingPeriod());
+      pipeline.getExtensionDataMap().put(ROWSET_SAMPLER, rowSetSampler);
+      OpenTelemetryPlugin.getInstance()
+          .getTransformMetrics()
+          .registerRowSets(pipeline, rowSetSampler);
+    }
+
+    // Attribute the threads of the transform copies to the pipeline, with runtime metrics
+    ExecutionResourceMonitor resourceMonitor =
+        OpenTelemetryPlugin.getInstance().getResourceMonitor();
+    if (resourceMonitor.isEnabled()) {
+      addResourceMonitorListeners(pipeline, resourceMonitor);
+    }
+
+    // Measure the resources used by the thread of each transform copy
+    if (config.isTransformResources() && ThreadResourceUsage.isSupported()) {
+      addResourceUsageListeners(pipeline);
+    }
+
+    // Only pipelines sampled when preparing execution are traced
+    if (!pipelineSpan.getSpanContext().isSampled()) {
+      return;
+    }
+
+    // Acquiring a tracer
+    Tracer transformTracer = GlobalOpenTelemetry.getTracer(INSTRUMENTATION_TRANSFORM_SCOPE);
+
+    Context context = getContext(pipeline).with(pipelineSpan);
+
+    LogRecordBridge logBridge = OpenTelemetryPlugin.getInstance().getLogBridge();
+
+    Map<IEngineComponent, Span> transformSpans = new ConcurrentHashMap<>();
+    pipeline.getExtensionDataMap().put(TRANSFORM_SPANS, transformSpans);
+
+    for (IEngineComponent component : pipeline.getComponents()) {
+      if (!(component instanceof ITransform transform)) {
+        continue;
+      }
+
+      transform.addTransformStartedListener(
+          (engine, transformMeta, t) -> {
+            Span transformSpan = startTransformSpan(transformTracer, context, component, null);
+            this.addProjectAndEnvironment(variables, transformSpan);
+            transformSpans.put(component, transformSpan);
+
+            // Child executions of the transform are traced under its span
+            if (component instanceof IExtensionData extension) {
+              extension.getExtensionDataMap().put(SPAN, transformSpan);
+            }
+
+            // Log lines of the transform are correlated with its span
+            logBridge.register(
+                component.getLogChannelId(),
+                INSTRUMENTATION_TRANSFORM_SCOPE,
+                context.with(transformSpan),
+                Attributes.builder()
+                    .put(HopAttributes.PIPELINE_EXECUTION_ID, pipeline.getLogChannelId())
+                    .put(HopAttributes.TRANSFORM_NAME, component.getName())
+                    .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+                    .build());
+          });
+
+      transform.addTransformFinishedListener(
+          (engine, transformMeta, t) -> {
+            Span transformSpan = transformSpans.get(component);
+
+            // Transform finished without having been started
+            if (transformSpan == null) {
+              Instant executionStartDate = null;
+              if (component.getExecutionStartDate() != null) {
+                executionStartDate = component.getExecutionStartDate().toInstant();
+              }
+              transformSpan =
+                  startTransformSpan(transformTracer, context, component, executionStartDate);
+              this.addProjectAndEnvironment(variables, transformSpan);
+              transformSpans.put(component, transformSpan);
+            }
+
+            endTransformSpan(transformSpan, component, null);
+            logBridge.unregister(component.getLogChannelId());
+          });
+    }
+  }
+
+  /** Add a row listener recording the time per row to each transform copy. */
+  protected void addRowLatencySamplers(IPipelineEngine<PipelineMeta> pipeline, int interval) {
+    for (IEngineComponent component : pipeline.getComponents()) {
+      if (component instanceof ITransform transform) {
+        Attributes attributes =
+            Attributes.builder()
+                .put(HopAttributes.TRANSFORM_NAME, component.getName())
+                .put(HopAttributes.TRANSFORM_PLUGIN_ID, transform.getTransformPluginId())
+                .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+                .build();
+        boolean input = !transform.getInputRowSets().isEmpty();
+        transform.addRowListener(new RowLatencySampler(row_duration, attributes, input, interval));
+      }
+    }
+  }
+
+  /** Attribute the thread of each transform copy to the pipeline while the transform runs. */
+  protected void addResourceMonitorListeners(
+      IPipelineEngine<PipelineMeta> pipeline, ExecutionResourceMonitor resourceMonitor) {
+    for (IEngineComponent component : pipeline.getComponents()) {
+      if (component instanceof ITransform transform) {
+        transform.addTransformStartedListener(
+            (engine, transformMeta, t) ->
+                resourceMonitor.addThread(
+                    pipeline.getLogChannelId(), Thread.currentThread().getId()));
+        transform.addTransformFinishedListener(
+            (engine, transformMeta, t) ->
+                resourceMonitor.removeThread(
+                    pipeline.getLogChannelId(), Thread.currentThread().getId()));
+      }
+    }
+  }
+
+  /**
+   * Measure the CPU time and allocated bytes of each transform copy on its thread.
+   *
+   * <p>The listeners are added before the listeners tracing the transforms, so the measures are
+   * recorded on the transform span before it is ended. The CPU time is also kept on the transform
+   * for the {@link BottleneckAnalysis} of the pipeline.
+   */
+  protected void addResourceUsageListeners(IPipelineEngine<PipelineMeta> pipeline) {
+    for (IEngineComponent component : pipeline.getComponents()) {
+      if (!(component instanceof ITransform transform)) {
+        continue;
+      }
+
+      ThreadResourceUsage usage = new ThreadResourceUsage();
+      transform.addTransformStartedListener((engine, transformMeta, t) -> usage.start());
+      transform.addTransformFinishedListener(
+          (engine, transformMeta, t) -> {
+            usage.stop();
+
+            Attributes attributes =
+                Attributes.builder()
+                    .put(HopAttributes.TRANSFORM_PLUGIN_ID, transform.getTransformPluginId())
+                    .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+                    .build();
+
+            @SuppressWarnings("unchecked")
+            Map<IEngineComponent, Span> transformSpans =
+                (Map<IEngineComponent, Span>) pipeline.getExtensionDataMap().get(TRANSFORM_SPANS);
+            Span transformSpan = transformSpans != null ? transformSpans.get(component) : null;
+
+            if (usage.getCpuTime() >= 0) {
+              if (component instanceof IExtensionData extension) {
+                extension.getExtensionDataMap().put(CPU_TIME, usage.getCpuTime());
+              }
+              transform_cpu_time.add(usage.getCpuTime() / 1e9, attributes);
+              if (transformSpan != null) {
+                transformSpan.setAttribute(
+                    HopAttributes.TRANSFORM_CPU_TIME, usage.getCpuTime() / 1_000_000);
+              }
+            }
+            if (usage.getAllocatedBytes() >= 0) {
+              transform_allocated_bytes.add(usage.getAllocatedBytes(), attributes);
+              if (transformSpan != null) {
+                transformSpan.setAttribute(
+                    HopAttributes.TRANSFORM_ALLOCATED_BYTES, usage.getAllocatedBytes());
+              }
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+
+/**
+ * Observe the row counters of every transform of the running pipelines, and the row sets between
+ * them when they are sampled.
+ *
+ * <p>Values are only read by a single asynchronous callback on each metric collection cycle,
+ * nothing is recorded on the transform threads. A pipeline is observed from its registration to
+ * its unregistration when it is finished.
+ *
+ * <p>The metrics are attributed to the pipeline and transform names, not to the execution, to bound
+ * their cardinality. Concurrent executions of a pipeline are summed, and the counters of the
+ * finished executions are kept so the counters stay monotonic across executions. The row set
+ * gauges are summed the same way, the fill ratio of concurrent executions is their total size over
+ * their total capacity.
+ */
+public class TransformMetricsObserver {
+
+  // Index of the counters of a transform copy
+  private static final int READ = 0;
+  private static final int WRITTEN = 1;
+  private static final int INPUT = 2;
+  private static final int OUTPUT = 3;
+  private static final int REJECTED = 4;
+  private static final int ERRORS = 5;
+
+  private final Map<IPipelineEngine<PipelineMeta>, Map<IEngineComponent, Attributes>> pipelines =
+      new ConcurrentHashMap<>();
+  private final Map<IPipelineEngine<PipelineMeta>, RowSetSampler> rowSetSamplers =
+      new ConcurrentHashMap<>();
+  private final Map<Attributes, long[]> finished = new HashMap<>();
+  private ObservableLongMeasurement rowsRead;
+  private ObservableLongMeasurement rowsWritten;
+  private ObservableLongMeasurement rowsInput;
+  private ObservableLongMeasurement rowsOutput;
+  private ObservableLongMeasurement rowsRejected;
+  private ObservableDoubleMeasurement rowsRate;
+  private ObservableLongMeasurement errors;
+  private ObservableLongMeasurement rowSetSize;
+  private ObservableDoubleMeasurement rowSetFill;
+  private volatile boolean enabled;
+
+  /** Create the instruments, nothing is observed before. */
+  public void bind(MeterProvider meterProvider) {
+    Meter meter =
+        meterProvider.get(PipelineExecutionTelemetryExtensionPoint.INSTRUMENTATION_TRANSFORM_SCOPE);
+    rowsRead =
+        meter
+            .counterBuilder("transform.rows.read")
+            .setDescription("The number of rows read from previous transforms.")
+            .setUnit("{row}")
+            .buildObserver();
+    rowsWritten =
+        meter
+            .counterBuilder("transform.rows.written")
+            .setDescription("The number of rows written to next transforms.")
+            .setUnit("{row}")
+            .buildObserver();
+    rowsInput =
+        meter
+            .counterBuilder("transform.rows.input")
+            .setDescription("The number of rows read from a file, database, etc.")
+            .setUnit("{row}")
+            .buildObserver();
+    rowsOutput =
+        meter
+            .counterBuilder("transform.rows.output")
+            .setDescription("The number of rows written to a file, database, etc.")
+            .setUnit("{row}")
+            .buildObserver();
+    rowsRejected =
+        meter
+            .counterBuilder("transform.rows.rejected")
+            .setDescription("The number of rows rejected by error handling.")
+            .setUnit("{row}")
+            .buildObserver();
+    rowsRate =
+        meter
+            .gaugeBuilder("transform.rows.rate")
+            .setDescription("The number of rows processed per second since the transform started.")
+            .setUnit("{row}/s")
+            .buildObserver();
+    errors =
+        meter
+            .counterBuilder("transform.errors")
+            .setDescription("The number of errors of a transform.")
+            .setUnit("{error}")
+            .buildObserver();
+
+    meter.batchCallback(
+        this::observe,
+        rowsRead,
+        rowsWritten,
+        rowsInput,
+        rowsOutput,
+        rowsRejected,
+        rowsRate,
+        errors);
+
+    Meter pipelineMeter =
+        meterProvider.get(PipelineExecutionTelemetryExtensionPoint.INSTRUMENTATION_PIPELINE_SCOPE);
+    rowSetSize =
+        pipelineMeter
+            .gaugeBuilder("rowset.size")
+            .ofLongs()
+            .setDescription("The number of rows buffered in a row set between two transforms.")
+            .setUnit("{row}")
+            .buildObserver();
+    rowSetFill =
+        pipelineMeter
+            .gaugeBuilder("rowset.fill")
+            .setDescription("The ratio of the capacity of a row set used by buffered rows.")
+            .setUnit("1")
+            .buildObserver();
+    pipelineMeter.batchCallback(this::observeRowSets, rowSetSize, rowSetFill);
+    enabled = true;
+  }
+
+  private synchronized void observe() {
+    Map<Attributes, long[]> counters = new HashMap<>();
+    finished.forEach((attributes, values) -> counters.put(attributes, values.clone()));
+    Map<Attributes, Double> rates = new HashMap<>();
+
+    for (IPipelineEngine<PipelineMeta> pipeline : pipelines.keySet()) {
+      for (IEngineComponent component : pipeline.getComponents()) {
+        Attributes attributes = getAttributes(pipeline, component);
+        add(counters, attributes, component);
+
+        long duration = component.getExecutionDuration();
+        if (duration > 0) {
+          double rate =
+              Math.max(component.getLinesRead(), component.getLinesWritten()) * 1000d / duration;
+          rates.merge(attributes, rate, Double::sum);
+        }
+      }
+    }
+
+    for (Map.Entry<Attributes, long[]> entry : counters.entrySet()) {
+      Attributes attributes = entry.getKey();
+      long[] values = entry.getValue();
+      rowsRead.record(values[READ], attributes);
+      rowsWritten.record(values[WRITTEN], attributes);
+      rowsInput.record(values[INPUT], attributes);
+      rowsOutput.record(values[OUTPUT], attributes);
+      rowsRejected.record(values[REJECTED], attributes);
+      errors.record(values[ERRORS], attributes);
+    }
+    rates.forEach((attributes, rate) -> rowsRate.record(rate, attributes));
+  }
+
+  private void observeRowSets() {
+    // The total size and capacity of the row sets with the same attributes
+    Map<Attributes, long[]> rowSets = new HashMap<>();
+    for (RowSetSampler sampler : rowSetSamplers.values()) {
+      for (RowSetSampler.Stats stat : sampler.getStats()) {
+        long[] values = rowSets.computeIfAbsent(stat.getAttributes(), key -> new long[2]);
+        values[0] += stat.getRowSet().size();
+        values[1] += sampler.getCapacity();
+      }
+    }
+
+    for (Map.Entry<Attributes, long[]> entry : rowSets.entrySet()) {
+      long[] values = entry.getValue();
+      rowSetSize.record(values[0], entry.getKey());
+      rowSetFill.record(values[1] > 0 ? (double) values[0] / values[1] : 0, entry.getKey());
+    }
+  }
+
+  private static void add(
+      Map<Attributes, long[]> counters, Attributes attributes, IEngineComponent component) {
+    long[] values = counters.computeIfAbsent(attributes, key -> new long[ERRORS + 1]);
+    values[READ] += component.getLinesRead();
+    values[WRITTEN] += component.getLinesWritten();
+    values[INPUT] += component.getLinesInput();
+    values[OUTPUT] += component.getLinesOutput();
+    values[REJECTED] += component.getLinesRejected();
+    values[ERRORS] += component.getErrors();
+  }
+
+  private Attributes getAttributes(
+      IPipelineEngine<PipelineMeta> pipeline, IEngineComponent component) {
+    return pipelines
+        .get(pipeline)
+        .computeIfAbsent(
+            component,
+            key ->
+                Attributes.builder()
+                    .put(HopAttributes.PIPELINE_NAME, pipeline.getPipelineMeta().getName())
+                    .put(HopAttributes.TRANSFORM_NAME, component.getName())
+                    .put(HopAttributes.TRANSFORM_COPY, component.getCopyNr())
+                    .put(
+                        HopAttributes.TRANSFORM_PLUGIN_ID,
+                        ExecutionTelemetry.getTransformPluginId(
+                            pipeline.getPipelineMeta(), component))
+                    .build());
+  }
+
+  /** Start observing the transforms of a pipeline, from the creation of its components. */
+  public void register(IPipelineEngine<PipelineMeta> pipeline) {
+    if (enabled) {
+      pipelines.put(pipeline, new HashMap<>());
+    }
+  }
+
+  /** Start observing the row sets of a registered pipeline, once its transforms are initialized. */
+  public void registerRowSets(IPipelineEngine<PipelineMeta> pipeline, RowSetSampler sampler) {
+    if (pipelines.containsKey(pipeline)) {
+      rowSetSamplers.put(pipeline, sampler);
+    }
+  }
+
+  /** Stop observing a finished pipeline, its counters are kept in the totals. */
+  public synchronized void unregister(IPipelineEngine<PipelineMeta> pipeline) {
+    rowSetSamplers.remove(pipeline);
+    if (pipelines.containsKey(pipeline)) {
+      for (IEngineComponent component : pipeline.getComponents()) {
+        add(finished, getAttributes(pipeline, component), component);
+      }
+      pipelines.remove(pipeline);
+    }
+  }
+}
@@ -19,15 +19,20 @@ package org.apache.hop.opentelemetry;
 
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.logs.Logger;
-import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.metrics.LongCounter;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.semconv.OtelAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.hop.core.Result;
 import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.extension.ExtensionPoint;
@@ -54,10 +59,15 @@ public class WorkflowExecutionTelemetryExtensionPoint extends ExecutionTelemetry
 
   private LongCounter workflow_execution_count;
   private LongCounter action_execution_count;
+  private DoubleHistogram workflow_duration;
+  private DoubleHistogram action_duration;
 
   public WorkflowExecutionTelemetryExtensionPoint() {
     super();
+  }
 
+  @Override
+  protected void createInstruments() {
     workflow_execution_count =
         GlobalOpenTelemetry.getMeter(INSTRUMENTATION_WORKFLOW_SCOPE)
             .counterBuilder("workflow.execution.count")
@@ -69,6 +79,18 @@ public class WorkflowExecutionTelemetryExtensionPoint extends ExecutionTelemetry
             .counterBuilder("action.execution.count")
             .setDescription("The total number of times a action has been executed.")
             .build();
+
+    workflow_duration =
+        createDurationHistogram(
+            INSTRUMENTATION_WORKFLOW_SCOPE,
+            "workflow.duration",
+            "The duration of the executions of a workflow.");
+
+    action_duration =
+        createDurationHistogram(
+            INSTRUMENTATION_ACTION_SCOPE,
+            "action.duration",
+            "The duration of the executions of an action.");
   }
 
   @Override
@@ -76,83 +98,174 @@ public class WorkflowExecutionTelemetryExtensionPoint extends ExecutionTelemetry
       ILogChannel log, IVariables variables, IWorkflowEngine<WorkflowMeta> workflow)
       throws HopException {
 
-    WorkflowEnginePlugin workflowPlugin =
-        workflow.getClass().getAnnotation(WorkflowEnginePlugin.class);
-    WorkflowMeta workflowMeta = workflow.getWorkflowMeta();
-
     // Ignore bug #3769 with transform workflow executor
     if (workflow.getExecutionStartDate() == null) return;
 
+    // Flight recorder events, whether telemetry is exported or not
+    if (OpenTelemetryPlugin.getInstance().getConfig().isJfrEvents()) {
+      ExecutionEvents.observe(workflow);
+    }
+
+    // Telemetry disabled, or the SDK is not available
+    if (!isTelemetryReady(workflow)) {
+      return;
+    }
+
+    WorkflowEnginePlugin workflowPlugin =
+        workflow.getClass().getAnnotation(WorkflowEnginePlugin.class);
+
     // Acquiring a tracer
     Tracer workflowTracer = GlobalOpenTelemetry.getTracer(INSTRUMENTATION_WORKFLOW_SCOPE);
 
     // Define context
     Context context = getContext(workflow);
 
-    // Create workflow trace
-    final Span workflowSpan =
-        workflowTracer
-            .spanBuilder(workflow.getWorkflowName())
-            .setSpanKind(SpanKind.SERVER)
-            .setParent(context)
-            .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Workflow.name())
-            .setAttribute(HopAttributes.WORKFLOW_ENGINE, workflowPlugin.id())
-            .setAttribute(
-                HopAttributes.WORKFLOW_RUN_CONFIGURATION,
-                workflow.getWorkflowRunConfiguration().getName())
-            .setAttribute(HopAttributes.WORKFLOW_CONTAINER_ID, workflow.getContainerId())
-            .setAttribute(HopAttributes.WORKFLOW_EXECUTION_ID, workflow.getLogChannelId())
-            .setAttribute(HopAttributes.WORKFLOW_VERSION, workflowMeta.getWorkflowVersion())
-            .setAttribute(HopAttributes.WORKFLOW_FILE_PATH, workflowMeta.getFilename())
-            .setStartTimestamp(workflow.getExecutionStartDate().toInstant())
-            .startSpan();
-
-    this.addProjectAndEnvironment(variables, workflowSpan);
+    // A root execution starts a new trace, a top-level execution has no parent in this process but
+    // may continue the trace of a remote parent
+    boolean root = !Span.fromContext(context).getSpanContext().isValid();
+    boolean topLevel = isTopLevel(workflow);
+
+    // Decide if the workflow is traced
+    ExecutionSampler sampler = OpenTelemetryPlugin.getInstance().getSampler();
+    boolean traced =
+        sampler.shouldSample(
+            context,
+            workflow.getWorkflowName(),
+            variables,
+            workflow.getWorkflowRunConfiguration().getName());
+
+    // Beyond the first child executions launched by a transform, only a ratio is traced, and the
+    // child executions of a folded action are folded with it
+    ExecutionAggregate children = getChildAggregate(workflow);
+    boolean folded =
+        traced
+            && (getActionAggregate(workflow) != null
+                || children != null && !sampler.shouldSampleChild(children));
+
+    final Span workflowSpan;
+    if (traced && !folded) {
+      // Create workflow trace, a root execution is sampled on its trace id when started
+      workflowSpan =
+          createWorkflowSpanBuilder(workflowTracer, context, workflow, workflowPlugin)
+              .setStartTimestamp(workflow.getExecutionStartDate().toInstant())
+              .setAllAttributes(getProjectAndEnvironment(variables))
+              .startSpan();
+    } else {
+      // Propagate the decision to child executions without building any span
+      workflowSpan = sampler.createUnsampledSpan(context);
+    }
+    boolean sampled = workflowSpan.getSpanContext().isSampled();
+
+    LogRecordBridge logBridge = OpenTelemetryPlugin.getInstance().getLogBridge();
+    if (sampled) {
+      // Stream workflow log
+      logBridge.register(
+          workflow.getLogChannelId(),
+          INSTRUMENTATION_WORKFLOW_SCOPE,
+          context.with(workflowSpan),
+          Attributes.builder()
+              .put(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Workflow.name())
+              .put(HopAttributes.WORKFLOW_CONTAINER_ID, workflow.getContainerId())
+              .put(HopAttributes.WORKFLOW_EXECUTION_ID, workflow.getLogChannelId())
+              .build());
+    }
 
     workflow.getExtensionDataMap().put(SPAN, workflowSpan);
 
+    // Propagate the trace to child executions in other processes
+    injectContext(context.with(workflowSpan), workflow);
+
+    // Attribute the resources used by the thread running the workflow, including the actions and
+    // the child workflows run on it
+    ExecutionResourceMonitor resourceMonitor =
+        OpenTelemetryPlugin.getInstance().getResourceMonitor();
+    long threadId = Thread.currentThread().getId();
+    resourceMonitor.register(
+        workflow.getLogChannelId(),
+        Attributes.of(HopAttributes.WORKFLOW_NAME, workflow.getWorkflowName()),
+        sampled ? workflowSpan : null);
+    resourceMonitor.addThread(workflow.getLogChannelId(), threadId);
+
+    // Beyond the threshold, the repeated executions of an action are folded in a summary span
+    int aggregationThreshold =
+        OpenTelemetryPlugin.getInstance().getConfig().getActionAggregationThreshold();
+    Map<ActionMeta, ExecutionAggregate> actionAggregates = new ConcurrentHashMap<>();
+
+    TelemetryExecutor telemetryExecutor = OpenTelemetryPlugin.getInstance().getTelemetryExecutor();
     workflow.addExecutionFinishedListener(
         engine -> {
-
-          // Update trace
-          Result result = engine.getResult();
-
-          workflowSpan.setStatus(
-              workflow.isStopped() || result.getNrErrors() > 0 ? StatusCode.ERROR : StatusCode.OK,
-              workflow.getStatusDescription());
-
-          if (engine.getExecutionEndDate() != null) {
-            workflowSpan.end(engine.getExecutionEndDate().toInstant());
+          long listenerStart = System.nanoTime();
+          resourceMonitor.removeThread(engine.getLogChannelId(), threadId);
+          ExecutionResourceMonitor.Usage usage =
+              resourceMonitor.unregister(engine.getLogChannelId());
+
+          // Snapshot the state needed by the telemetry, the execution thread moves on
+          boolean error = isError(engine);
+          String statusDescription = engine.getStatusDescription();
+          Date startDate = engine.getExecutionStartDate();
+          Date endDate = engine.getExecutionEndDate();
+
+          // Summarized on the span of the parent transform, before it ends
+          if (children != null) {
+            children.record(getDuration(startDate, endDate), error);
           }
 
-          // Increment metrics
-          workflow_execution_count.add(
-              1,
-              Attributes.builder().put(HopAttributes.WORKFLOW_ENGINE, workflowPlugin.id()).build());
-
-          // Logs workflow result
-          if (result.getLogText() != null) {
-
-            // Acquiring a logger
-            Logger logger =
-                GlobalOpenTelemetry.get().getLogsBridge().get(INSTRUMENTATION_WORKFLOW_SCOPE);
-
-            // Logs result
-            logger
-                .logRecordBuilder()
-                .setContext(context.with(workflowSpan))
-                .setSeverity(Severity.INFO)
-                .setBody(result.getLogText())
-                .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Workflow.name())
-                .setAttribute(HopAttributes.WORKFLOW_CONTAINER_ID, workflow.getContainerId())
-                .setAttribute(HopAttributes.WORKFLOW_EXECUTION_ID, workflow.getLogChannelId())
-                .emit();
-          }
+          telemetryExecutor.execute(
+              () -> {
+                // Update trace
+                if (sampled) {
+                  for (ExecutionAggregate aggregate : actionAggregates.values()) {
+                    aggregate.end();
+                  }
+                  addResourceUsage(workflowSpan, usage);
+                  endWorkflowSpan(workflowSpan, error, statusDescription, endDate);
+                } else if (root || folded) {
+                  // Keep workflows in error or too slow
+                  keepWorkflow(
+                      workflowTracer,
+                      context,
+                      engine,
+                      workflowPlugin,
+                      variables,
+                      sampler,
+                      folded,
+                      error,
+                      statusDescription,
+                      startDate,
+                      endDate);
+                }
+
+                // Increment metrics
+                workflow_execution_count.add(
+                    1,
+                    Attributes.builder()
+                        .put(HopAttributes.WORKFLOW_ENGINE, workflowPlugin.id())
+                        .build());
+                workflow_duration.record(
+                    getDuration(startDate, endDate),
+                    Attributes.builder()
+                        .put(HopAttributes.WORKFLOW_ENGINE, workflowPlugin.id())
+                        .put(HopAttributes.EXECUTION_STATUS, getStatus(error))
+                        .build());
+
+                // Export the telemetry of a top-level execution without waiting for the next batch
+                if (topLevel) {
+                  OpenTelemetryPlugin.getInstance().flush();
+                }
+              });
+
+          // Stop streaming workflow log
+          logBridge.unregister(engine.getLogChannelId());
+
+          telemetryExecutor.recordListener(ExecutionType.Workflow, listenerStart);
         });
 
     // Add event if workflow is stopped
     workflow.addExecutionStoppedListener(engine -> workflowSpan.addEvent("Stop workflow"));
 
+    // Acquiring a tracer
+    Tracer actionTracer = GlobalOpenTelemetry.getTracer(INSTRUMENTATION_ACTION_SCOPE);
+
     // Also trace every workflow action execution results.
     workflow.addActionListener(
         new IActionListener() {
@@ -160,36 +273,177 @@ public class WorkflowExecutionTelemetryExtensionPoint extends ExecutionTelemetry
           public void beforeExecution(
               IWorkflowEngine workflow, ActionMeta actionMeta, IAction action) {
 
-            // Acquiring a tracer
-            Tracer actionTracer = GlobalOpenTelemetry.getTracer(INSTRUMENTATION_ACTION_SCOPE);
+            action.getExtensionDataMap().put(ACTION_START, System.nanoTime());
+
+            if (!sampled) {
+              return;
+            }
+
+            // Fold the execution in the summary span of the action, child executions included
+            if (aggregationThreshold > 0) {
+              ExecutionAggregate aggregate =
+                  actionAggregates.computeIfAbsent(
+                      actionMeta, meta -> new ExecutionAggregate(aggregationThreshold));
+              if (aggregate.fold()) {
+                Span summarySpan =
+                    aggregate.getSpan(
+                        () ->
+                            createActionSpanBuilder(
+                                    actionTracer, context.with(workflowSpan), actionMeta, action)
+                                .setAttribute(HopAttributes.ACTION_AGGREGATED, true)
+                                .startSpan());
+                action.getExtensionDataMap().put(ACTION_AGGREGATE, aggregate);
+                action.getExtensionDataMap().put(SPAN, summarySpan);
+                injectContext(context.with(summarySpan), action);
+                return;
+              }
+            }
 
             // Create action trace
             Span actionSpan =
-                actionTracer
-                    .spanBuilder(actionMeta.getName())
-                    .setSpanKind(SpanKind.SERVER)
-                    .setParent(context.with(workflowSpan))
-                    .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Action.name())
-                    .setAttribute(HopAttributes.ACTION_PLUGIN_ID, action.getPluginId())
+                createActionSpanBuilder(
+                        actionTracer, context.with(workflowSpan), actionMeta, action)
                     .startSpan();
 
             action.getExtensionDataMap().put(SPAN, actionSpan);
+
+            // Remote executions of the action are traced under its span
+            injectContext(context.with(actionSpan), action);
           }
 
           @Override
           public void afterExecution(
               IWorkflowEngine workflow, ActionMeta actionMeta, IAction action, Result result) {
 
-            Span actionSpan = (Span) action.getExtensionDataMap().get(SPAN);
-            actionSpan.setStatus(result.getNrErrors() > 0 ? StatusCode.ERROR : StatusCode.OK);
-            actionSpan.end();
+            boolean error = result.getNrErrors() > 0;
+            Object start = action.getExtensionDataMap().remove(ACTION_START);
+            long duration = start instanceof Long startTime ? System.nanoTime() - startTime : 0;
+
+            ExecutionAggregate aggregate =
+                (ExecutionAggregate) action.getExtensionDataMap().remove(ACTION_AGGREGATE);
+            if (aggregate != null) {
+              aggregate.record(duration / 1e9, error);
+
+              // Failed executions are always traced individually
+              if (error) {
+                createActionSpanBuilder(
+                        actionTracer, context.with(workflowSpan), actionMeta, action)
+                    .setStartTimestamp(Instant.now().minusNanos(duration))
+                    .startSpan()
+                    .setStatus(StatusCode.ERROR)
+                    .end();
+              }
+            } else if (sampled) {
+              Span actionSpan = (Span) action.getExtensionDataMap().get(SPAN);
+              actionSpan.setStatus(error ? StatusCode.ERROR : StatusCode.OK);
+              actionSpan.end();
+            }
 
             action_execution_count.add(
                 1,
                 Attributes.builder()
                     .put(HopAttributes.ACTION_PLUGIN_ID, action.getPluginId())
                     .build());
+
+            if (start instanceof Long) {
+              action_duration.record(
+                  duration / 1e9,
+                  Attributes.builder()
+                      .put(HopAttributes.ACTION_PLUGIN_ID, action.getPluginId())
+                      .put(HopAttributes.EXECUTION_STATUS, getStatus(error))
+                      .build());
+            }
           }
         });
   }
+
+  protected SpanBuilder createWorkflowSpanBuilder(
+      Tracer tracer,
+      Context context,
+      IWorkflowEngine<WorkflowMeta> workflow,
+      WorkflowEnginePlugin workflowPlugin) {
+    WorkflowMeta workflowMeta = workflow.getWorkflowMeta();
+
+    return tracer
+        .spanBuilder(workflow.getWorkflowName())
+        .setSpanKind(SpanKind.SERVER)
+        .setParent(context)
+        .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Workflow.name())
+        .setAttribute(HopAttributes.WORKFLOW_ENGINE, workflowPlugin.id())
+        .setAttribute(
+            HopAttributes.WORKFLOW_RUN_CONFIGURATION,
+            workflow.getWorkflowRunConfiguration().getName())
+        .setAttribute(HopAttributes.WORKFLOW_CONTAINER_ID, workflow.getContainerId())
+        .setAttribute(HopAttributes.WORKFLOW_EXECUTION_ID, workflow.getLogChannelId())
+        .setAttribute(HopAttributes.WORKFLOW_VERSION, workflowMeta.getWorkflowVersion())
+        .setAttribute(HopAttributes.WORKFLOW_FILE_PATH, workflowMeta.getFilename());
+  }
+
+  protected SpanBuilder createActionSpanBuilder(
+      Tracer tracer, Context context, ActionMeta actionMeta, IAction action) {
+    return tracer
+        .spanBuilder(actionMeta.getName())
+        .setSpanKind(SpanKind.SERVER)
+        .setParent(context)
+        .setAttribute(OtelAttributes.OTEL_SCOPE_NAME, ExecutionType.Action.name())
+        .setAttribute(HopAttributes.ACTION_PLUGIN_ID, action.getPluginId());
+  }
+
+  protected boolean isError(IWorkflowEngine<WorkflowMeta> engine) {
+    Result result = engine.getResult();
+    return engine.isStopped() || (result != null && result.getNrErrors() > 0);
+  }
+
+  /** Set the status of the workflow span and end it at the end of the execution. */
+  protected void endWorkflowSpan(Span span, boolean error, String statusDescription, Date end) {
+    span.setStatus(error ? StatusCode.ERROR : StatusCode.OK, statusDescription);
+
+    if (end != null) {
+      span.end(end.toInstant());
+    } else {
+      span.end();
+    }
+  }
+
+  /**
+   * Trace a workflow that was not sampled, after the fact, if the sampler wants to keep it.
+   *
+   * <p>A root workflow is kept in its own trace. A child workflow dropped beyond the limit of its
+   * parent transform is kept under the transform span, and a child workflow folded with its parent
+   * action under the summary span of the action.
+   */
+  protected void keepWorkflow(
+      Tracer tracer,
+      Context context,
+      IWorkflowEngine<WorkflowMeta> engine,
+      WorkflowEnginePlugin workflowPlugin,
+      IVariables variables,
+      ExecutionSampler sampler,
+      boolean folded,
+      boolean error,
+      String statusDescription,
+      Date startDate,
+      Date endDate) {
+    Instant start = startDate.toInstant();
+    Instant end = endDate != null ? endDate.toInstant() : Instant.now();
+
+    String reason =
+        folded
+            ? sampler.getChildKeepReason(error)
+            : sampler.getKeepReason(error, Duration.between(start, end));
+    if (reason == null) {
+      return;
+    }
+
+    SpanBuilder builder =
+        createWorkflowSpanBuilder(tracer, context, engine, workflowPlugin)
+            .setStartTimestamp(start)
+            .setAttribute(HopAttributes.SAMPLING_REASON, reason);
+    if (!folded) {
+      builder.setNoParent();
+    }
+    Span span = builder.startSpan();
+    this.addProjectAndEnvironment(variables, span);
+    endWorkflowSpan(span, error, statusDescription, endDate);
+  }
 }
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hop.core.IExtensionData;
+import org.apache.hop.core.IRowSet;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.transform.TransformMeta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BottleneckAnalysisTest {
+
+  private static final int CAPACITY = 10;
+
+  private final Map<String, TransformMeta> transforms = new HashMap<>();
+  private final List<TransformMeta> order = new ArrayList<>();
+  private final List<IEngineComponent> components = new ArrayList<>();
+  private final List<RowSetSampler.Stats> stats = new ArrayList<>();
+  private PipelineMeta pipelineMeta;
+  private RowSetSampler sampler;
+
+  @BeforeEach
+  void setUp() {
+    pipelineMeta = mock(PipelineMeta.class);
+    when(pipelineMeta.getTransforms()).thenReturn(order);
+    when(pipelineMeta.findNextTransforms(any(TransformMeta.class))).thenReturn(List.of());
+
+    sampler = mock(RowSetSampler.class);
+    when(sampler.getStats()).thenReturn(stats);
+  }
+
+  @Test
+  void findBottleneckAndCriticalPath() {
+    // A feeds B and D, B feeds C
+    addTransform("A", 1000);
+    addTransform("B", 1000);
+    addTransform("C", 1000);
+    addTransform("D", 100);
+    addHop("A", "B", CAPACITY);
+    addHop("B", "C", 0);
+    addHop("A", "D", CAPACITY / 2);
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, sampler);
+
+    // A is blocked on a full output half of the time, C always waits on an empty input
+    Map<String, Double> busyRatios = analysis.getBusyRatios();
+    assertEquals(0.5, busyRatios.get("A"), 1e-9);
+    assertEquals(1, busyRatios.get("B"), 1e-9);
+    assertEquals(0, busyRatios.get("C"), 1e-9);
+    assertEquals(1, busyRatios.get("D"), 1e-9);
+
+    assertEquals("B", analysis.getBottleneck());
+    assertEquals(List.of("A", "B", "C"), analysis.getCriticalPath());
+  }
+
+  @Test
+  void keepLongestCopy() {
+    addTransform("A", 100);
+    addTransform("B", 100);
+    addComponent("B", 5000);
+    addTransform("C", 1000);
+    addHop("A", "B", CAPACITY / 2);
+    addHop("A", "C", CAPACITY / 2);
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, sampler);
+
+    // The slowest copy of B makes the path through B the longest
+    assertEquals(List.of("A", "B"), analysis.getCriticalPath());
+  }
+
+  @Test
+  void ignoreLoops() {
+    addTransform("A", 1000);
+    addTransform("B", 1000);
+    addHop("A", "B", CAPACITY / 2);
+    addHop("B", "A", CAPACITY / 2);
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, sampler);
+
+    assertEquals("A", analysis.getBottleneck());
+    assertEquals(2, analysis.getCriticalPath().size());
+  }
+
+  @Test
+  void noResultWithoutSamples() {
+    addTransform("A", 1000);
+    addTransform("B", 1000);
+    addHop("A", "B", 0);
+    stats.clear();
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, sampler);
+
+    assertNull(analysis.getBottleneck());
+    assertTrue(analysis.getCriticalPath().isEmpty());
+    assertTrue(analysis.getBusyRatios().isEmpty());
+
+    Span span = mock(Span.class);
+    analysis.addTo(span);
+    verifyNoInteractions(span);
+  }
+
+  @Test
+  void fallBackToCpuTime() {
+    addTransform("A", 1000);
+    addTransform("B", 1000);
+    addHop("A", "B", 0);
+    stats.clear();
+    components.clear();
+    addComponent("A", 1000, 200_000_000L);
+    addComponent("B", 1000, 900_000_000L);
+    addComponent("B", 500, 100_000_000L);
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, null);
+
+    // The CPU time of the copies over their duration
+    assertEquals(0.2, analysis.getBusyRatios().get("A"), 1e-9);
+    assertEquals(2 / 3d, analysis.getBusyRatios().get("B"), 1e-9);
+    assertEquals("B", analysis.getBottleneck());
+    assertEquals(List.of("A", "B"), analysis.getCriticalPath());
+  }
+
+  @Test
+  void preferSamplesToCpuTime() {
+    addTransform("A", 1000);
+    addTransform("B", 1000);
+    addHop("A", "B", CAPACITY);
+    components.clear();
+    addComponent("A", 1000, 1_000_000_000L);
+    addComponent("B", 1000, 0L);
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, sampler);
+
+    assertEquals("B", analysis.getBottleneck());
+  }
+
+  @Test
+  void addToSpan() {
+    addTransform("A", 1000);
+    addTransform("B", 1000);
+    addHop("A", "B", CAPACITY);
+
+    BottleneckAnalysis analysis = BottleneckAnalysis.analyze(pipelineMeta, components, sampler);
+    Span span = mock(Span.class);
+    analysis.addTo(span);
+
+    verify(span).setAttribute(HopAttributes.PIPELINE_BOTTLENECK_TRANSFORM, "B");
+    verify(span).setAttribute(HopAttributes.PIPELINE_CRITICAL_PATH, List.of("A", "B"));
+    verify(span)
+        .addEvent(
+            eq("Transform load"),
+            eq(
+                Attributes.of(
+                    HopAttributes.TRANSFORM_NAME, "A", HopAttributes.TRANSFORM_BUSY_RATIO, 0d)));
+    verify(span)
+        .addEvent(
+            eq("Transform load"),
+            eq(
+                Attributes.of(
+                    HopAttributes.TRANSFORM_NAME, "B", HopAttributes.TRANSFORM_BUSY_RATIO, 1d)));
+  }
+
+  private void addTransform(String name, long duration) {
+    TransformMeta transformMeta = mock(TransformMeta.class);
+    when(transformMeta.getName()).thenReturn(name);
+    transforms.put(name, transformMeta);
+    order.add(transformMeta);
+    addComponent(name, duration);
+  }
+
+  private void addComponent(String name, long duration) {
+    IEngineComponent component = mock(IEngineComponent.class);
+    when(component.getName()).thenReturn(name);
+    when(component.getExecutionDuration()).thenReturn(duration);
+    components.add(component);
+  }
+
+  /** Add a component of which the CPU time was measured. */
+  private void addComponent(String name, long duration, long cpuTime) {
+    IEngineComponent component =
+        mock(IEngineComponent.class, withSettings().extraInterfaces(IExtensionData.class));
+    when(component.getName()).thenReturn(name);
+    when(component.getExecutionDuration()).thenReturn(duration);
+    Map<String, Object> dataMap = new HashMap<>();
+    dataMap.put(ExecutionTelemetry.CPU_TIME, cpuTime);
+    when(((IExtensionData) component).getExtensionDataMap()).thenReturn(dataMap);
+    components.add(component);
+  }
+
+  /** Add a hop and its row set, sampled with a constant number of rows. */
+  private void addHop(String from, String to, int size) {
+    TransformMeta fromMeta = transforms.get(from);
+    List<TransformMeta> next = new ArrayList<>(pipelineMeta.findNextTransforms(fromMeta));
+    next.add(transforms.get(to));
+    when(pipelineMeta.findNextTransforms(fromMeta)).thenReturn(next);
+
+    IRowSet rowSet = mock(IRowSet.class);
+    when(rowSet.getOriginTransformName()).thenReturn(from);
+    when(rowSet.getDestinationTransformName()).thenReturn(to);
+    when(rowSet.size()).thenReturn(size);
+
+    RowSetSampler.Stats stat = new RowSetSampler.Stats(rowSet, Attributes.empty());
+    for (int i = 0; i < 4; i++) {
+      stat.sample(CAPACITY);
+    }
+    stats.add(stat);
+  }
+}
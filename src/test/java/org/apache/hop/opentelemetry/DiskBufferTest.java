@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskBufferTest {
+
+  private static final long MAX_SIZE = 2L * DiskBuffer.SEGMENT_SIZE;
+
+  /** A payload filling a bit more than a third of a segment, two fit in a segment. */
+  private static final int LARGE = DiskBuffer.SEGMENT_SIZE / 3;
+
+  @TempDir Path directory;
+
+  @Test
+  void replayInOrder() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      assertTrue(buffer.isEmpty());
+      assertNull(buffer.peek());
+
+      buffer.append((byte) 1, bytes("first"));
+      buffer.append((byte) 2, bytes("second"));
+      buffer.append((byte) 3, bytes("third"));
+      assertFalse(buffer.isEmpty());
+
+      assertReplay(buffer, "first", "second", "third");
+      assertTrue(buffer.isEmpty());
+    }
+  }
+
+  @Test
+  void keepSignal() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      buffer.append((byte) 2, bytes("metrics"));
+
+      DiskBuffer.Record record = buffer.peek();
+      assertEquals(2, record.signal());
+      assertArrayEquals(bytes("metrics"), record.payload());
+    }
+  }
+
+  @Test
+  void rejectPayloadLargerThanSegment() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      assertFalse(buffer.append((byte) 1, new byte[DiskBuffer.SEGMENT_SIZE]));
+      assertTrue(buffer.isEmpty());
+    }
+  }
+
+  @Test
+  void rollOverToNewSegment() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, 4L * DiskBuffer.SEGMENT_SIZE)) {
+      for (int i = 0; i < 3; i++) {
+        buffer.append((byte) 1, large(i));
+      }
+
+      assertEquals(2L * DiskBuffer.SEGMENT_SIZE, buffer.getSize());
+      assertEquals(2, listSegments().size());
+
+      for (int i = 0; i < 3; i++) {
+        DiskBuffer.Record record = buffer.peek();
+        assertArrayEquals(large(i), record.payload());
+        buffer.remove(record);
+      }
+      assertTrue(buffer.isEmpty());
+    }
+  }
+
+  @Test
+  void deleteConsumedSegment() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, 4L * DiskBuffer.SEGMENT_SIZE)) {
+      for (int i = 0; i < 3; i++) {
+        buffer.append((byte) 1, large(i));
+      }
+      Path first = listSegments().get(0);
+
+      buffer.remove(buffer.peek());
+      assertTrue(Files.exists(first));
+      buffer.remove(buffer.peek());
+      assertFalse(Files.exists(first));
+      assertEquals(DiskBuffer.SEGMENT_SIZE, buffer.getSize());
+    }
+  }
+
+  @Test
+  void evictOldestSegment() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      for (int i = 0; i < 7; i++) {
+        buffer.append((byte) 1, large(i));
+      }
+
+      // Two segments of two records were evicted to stay within two segments
+      assertEquals(4, buffer.getEvicted());
+      assertEquals(MAX_SIZE, buffer.getSize());
+      assertArrayEquals(large(4), buffer.peek().payload());
+    }
+  }
+
+  @Test
+  void recoverAfterRestart() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      buffer.append((byte) 1, bytes("first"));
+      buffer.append((byte) 1, bytes("second"));
+      buffer.append((byte) 1, bytes("third"));
+      buffer.remove(buffer.peek());
+    }
+
+    // Consumed records are not replayed again, new records are appended after the others
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      assertFalse(buffer.isEmpty());
+      buffer.append((byte) 1, bytes("fourth"));
+      assertReplay(buffer, "second", "third", "fourth");
+    }
+  }
+
+  @Test
+  void recoverSequenceAfterRestart() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, 4L * DiskBuffer.SEGMENT_SIZE)) {
+      for (int i = 0; i < 3; i++) {
+        buffer.append((byte) 1, large(i));
+      }
+    }
+    List<Path> before = listSegments();
+
+    // The next segment follows the segments left by the previous run
+    try (DiskBuffer buffer = new DiskBuffer(directory, 4L * DiskBuffer.SEGMENT_SIZE)) {
+      for (int i = 3; i < 5; i++) {
+        buffer.append((byte) 1, large(i));
+      }
+      List<Path> after = listSegments();
+      assertEquals(3, after.size());
+      assertEquals(before, after.subList(0, 2));
+
+      for (int i = 0; i < 5; i++) {
+        DiskBuffer.Record record = buffer.peek();
+        assertArrayEquals(large(i), record.payload());
+        buffer.remove(record);
+      }
+      assertTrue(buffer.isEmpty());
+    }
+  }
+
+  @Test
+  void deleteConsumedSegmentsAtRestart() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      buffer.append((byte) 1, bytes("first"));
+      buffer.remove(buffer.peek());
+    }
+
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      assertTrue(buffer.isEmpty());
+      assertTrue(listSegments().isEmpty());
+    }
+  }
+
+  @Test
+  void ignoreTornRecord() throws IOException {
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      buffer.append((byte) 1, bytes("first"));
+    }
+
+    // A record whose length was not written yet when the process crashed
+    Path segment = listSegments().get(0);
+    byte[] content = Files.readAllBytes(segment);
+    int torn = Integer.BYTES + 1 + bytes("first").length;
+    content[torn + Integer.BYTES] = 1;
+    content[torn + Integer.BYTES + 1] = 'x';
+    Files.write(segment, content);
+
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      assertReplay(buffer, "first");
+      assertTrue(buffer.isEmpty());
+    }
+  }
+
+  @Test
+  void ignoreStrayFiles() throws IOException {
+    Files.writeString(directory.resolve("notes.seg"), "not a segment");
+    Files.writeString(directory.resolve("README.txt"), "not a segment");
+
+    try (DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE)) {
+      assertTrue(buffer.isEmpty());
+      buffer.append((byte) 1, bytes("first"));
+      assertReplay(buffer, "first");
+    }
+    assertTrue(Files.exists(directory.resolve("notes.seg")));
+  }
+
+  @Test
+  void rejectAppendAfterClose() throws IOException {
+    DiskBuffer buffer = new DiskBuffer(directory, MAX_SIZE);
+    buffer.append((byte) 1, bytes("first"));
+    buffer.close();
+
+    assertThrows(ClosedChannelException.class, () -> buffer.append((byte) 1, bytes("second")));
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.peek());
+
+    // No segment was opened after the close
+    assertEquals(1, listSegments().size());
+  }
+
+  private static void assertReplay(DiskBuffer buffer, String... payloads) throws IOException {
+    for (String payload : payloads) {
+      DiskBuffer.Record record = buffer.peek();
+      assertArrayEquals(bytes(payload), record.payload());
+      buffer.remove(record);
+    }
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream
+          .filter(file -> file.getFileName().toString().matches("\\d+\\.seg"))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] large(int index) {
+    byte[] payload = new byte[LARGE];
+    payload[0] = (byte) index;
+    payload[LARGE - 1] = (byte) index;
+    return payload;
+  }
+}
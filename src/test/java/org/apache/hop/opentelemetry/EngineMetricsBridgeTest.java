@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.EngineMetrics;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IEngineMetric;
+import org.apache.hop.pipeline.transform.TransformMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EngineMetricsBridgeTest {
+
+  private static final String ENGINE = "Local";
+
+  private final List<IEngineComponent> components = new ArrayList<>();
+  private final Map<IEngineComponent, Map<IEngineMetric, Long>> metrics = new HashMap<>();
+  private InMemoryMetricReader reader;
+  private SdkMeterProvider meterProvider;
+  private EngineMetricsBridge bridge;
+  private PipelineMeta pipelineMeta;
+  private EngineMetrics engineMetrics;
+
+  @BeforeEach
+  void setUp() {
+    reader = InMemoryMetricReader.create();
+    meterProvider = SdkMeterProvider.builder().registerMetricReader(reader).build();
+    bridge = new EngineMetricsBridge(meterProvider.get("test"));
+
+    pipelineMeta = mock(PipelineMeta.class);
+    engineMetrics = mock(EngineMetrics.class);
+    when(engineMetrics.getComponents()).thenReturn(components);
+    when(engineMetrics.getComponentMetricsMap()).thenReturn(metrics);
+  }
+
+  @AfterEach
+  void tearDown() {
+    meterProvider.close();
+  }
+
+  @Test
+  void addNumericMetricsByTransformType() {
+    IEngineComponent component = addComponent("Lookup", "StreamLookup", 0, null);
+    Map<IEngineMetric, Long> values = new HashMap<>();
+    values.put(metric("read", true), 100L);
+    values.put(metric("rejected", true), 2L);
+    values.put(metric("written", true), null);
+    values.put(metric("status", false), 1L);
+    metrics.put(component, values);
+    IEngineComponent other = addComponent("Lookup 2", "StreamLookup", 0, null);
+    metrics.put(other, Map.of(metric("read", true), 50L));
+
+    record();
+
+    List<LongPointData> points =
+        new ArrayList<>(getMetric("transform.engine.metric").getLongSumData().getPoints());
+    assertEquals(2, points.size());
+    assertEquals(150, getPoint(points, "read").getValue());
+    assertEquals(2, getPoint(points, "rejected").getValue());
+    assertEquals(
+        Attributes.builder()
+            .put(HopAttributes.PIPELINE_ENGINE, ENGINE)
+            .put(HopAttributes.TRANSFORM_PLUGIN_ID, "StreamLookup")
+            .put(HopAttributes.ENGINE_METRIC, "read")
+            .build(),
+        getPoint(points, "read").getAttributes());
+  }
+
+  @Test
+  void recordThroughputOfComponents() {
+    IEngineComponent component = addComponent("Lookup", "StreamLookup", 2000, new Date());
+    when(component.getLinesRead()).thenReturn(1000L);
+    when(component.getLinesWritten()).thenReturn(400L);
+
+    // Never started, or with a duration unknown to the engine
+    addComponent("Filter", "FilterRows", 2000, null);
+    addComponent("Output", "TableOutput", 0, new Date());
+
+    record();
+
+    HistogramPointData point =
+        getMetric("transform.rows.throughput").getHistogramData().getPoints().iterator().next();
+    assertEquals(1, point.getCount());
+    assertEquals(500, point.getSum(), 1e-9);
+    assertEquals(
+        Attributes.of(
+            HopAttributes.PIPELINE_ENGINE,
+            ENGINE,
+            HopAttributes.TRANSFORM_PLUGIN_ID,
+            "StreamLookup"),
+        point.getAttributes());
+  }
+
+  @Test
+  void recordThroughputWithoutEngineMetrics() {
+    IEngineComponent component = addComponent("Lookup", "StreamLookup", 1000, new Date());
+    when(component.getLinesRead()).thenReturn(100L);
+    engineMetrics = null;
+
+    record();
+
+    List<MetricData> data = new ArrayList<>(reader.collectAllMetrics());
+    assertEquals(1, data.size());
+    assertEquals("transform.rows.throughput", data.get(0).getName());
+  }
+
+  @Test
+  void recordNothingWithoutComponents() {
+    record();
+
+    assertTrue(reader.collectAllMetrics().isEmpty());
+  }
+
+  private void record() {
+    bridge.record(pipelineMeta, engineMetrics, components, ENGINE);
+  }
+
+  private IEngineComponent addComponent(String name, String pluginId, long duration, Date start) {
+    TransformMeta transformMeta = mock(TransformMeta.class);
+    when(transformMeta.getTransformPluginId()).thenReturn(pluginId);
+    when(pipelineMeta.findTransform(name)).thenReturn(transformMeta);
+
+    IEngineComponent component = mock(IEngineComponent.class);
+    when(component.getName()).thenReturn(name);
+    when(component.getExecutionDuration()).thenReturn(duration);
+    when(component.getExecutionStartDate()).thenReturn(start);
+    components.add(component);
+    return component;
+  }
+
+  private static IEngineMetric metric(String code, boolean numeric) {
+    IEngineMetric metric = mock(IEngineMetric.class);
+    when(metric.getCode()).thenReturn(code);
+    when(metric.isNumeric()).thenReturn(numeric);
+    return metric;
+  }
+
+  private MetricData getMetric(String name) {
+    return reader.collectAllMetrics().stream()
+        .filter(data -> data.getName().equals(name))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private static LongPointData getPoint(List<LongPointData> points, String code) {
+    return points.stream()
+        .filter(point -> code.equals(point.getAttributes().get(HopAttributes.ENGINE_METRIC)))
+        .findFirst()
+        .orElseThrow();
+  }
+}
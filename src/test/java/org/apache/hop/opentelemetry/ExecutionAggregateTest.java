@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ExecutionAggregateTest {
+
+  private static final double DELTA = 1e-9;
+
+  @Test
+  void foldBeyondThreshold() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(2);
+
+    assertFalse(aggregate.fold());
+    assertFalse(aggregate.fold());
+    assertTrue(aggregate.fold());
+    assertTrue(aggregate.fold());
+  }
+
+  @Test
+  void numberExecutions() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(1);
+
+    assertEquals(1, aggregate.nextExecution());
+    assertEquals(2, aggregate.nextExecution());
+
+    // Folding counts the executions the same way
+    assertTrue(aggregate.fold());
+    assertEquals(4, aggregate.nextExecution());
+  }
+
+  @Test
+  void summarizeExecutions() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    aggregate.record(0.5, false);
+    aggregate.record(2, true);
+    aggregate.record(0.005, false);
+
+    assertEquals(3, aggregate.getCount());
+    Attributes attributes = aggregate.getAttributes();
+    assertEquals(3L, attributes.get(HopAttributes.AGGREGATE_COUNT));
+    assertEquals(1L, attributes.get(HopAttributes.AGGREGATE_ERRORS));
+    assertEquals(2.505, attributes.get(HopAttributes.AGGREGATE_DURATION_TOTAL), DELTA);
+    assertEquals(0.005, attributes.get(HopAttributes.AGGREGATE_DURATION_MIN), DELTA);
+    assertEquals(2, attributes.get(HopAttributes.AGGREGATE_DURATION_MAX), DELTA);
+    assertEquals(
+        ExecutionAggregate.BOUNDS, attributes.get(HopAttributes.AGGREGATE_DURATION_BOUNDS));
+    assertEquals(
+        List.of(0L, 1L, 0L, 1L, 1L, 0L, 0L, 0L),
+        attributes.get(HopAttributes.AGGREGATE_DURATION_COUNTS));
+  }
+
+  @Test
+  void countDurationsOnBucketBounds() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    aggregate.record(0, false);
+    aggregate.record(0.001, false);
+    aggregate.record(600, false);
+    aggregate.record(3600, false);
+
+    assertEquals(
+        List.of(2L, 0L, 0L, 0L, 0L, 0L, 1L, 1L),
+        aggregate.getAttributes().get(HopAttributes.AGGREGATE_DURATION_COUNTS));
+  }
+
+  @Test
+  void estimatePercentiles() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    record(aggregate, 50, 0.005);
+    record(aggregate, 40, 0.5);
+    record(aggregate, 9, 5);
+    record(aggregate, 1, 100);
+
+    // The upper bound of the bucket of the percentile
+    assertEquals(0.01, aggregate.getPercentile(0.5), DELTA);
+    assertEquals(1, aggregate.getPercentile(0.9), DELTA);
+    assertEquals(10, aggregate.getPercentile(0.99), DELTA);
+
+    Attributes attributes = aggregate.getAttributes();
+    assertEquals(0.01, attributes.get(HopAttributes.AGGREGATE_DURATION_P50), DELTA);
+    assertEquals(1, attributes.get(HopAttributes.AGGREGATE_DURATION_P90), DELTA);
+    assertEquals(10, attributes.get(HopAttributes.AGGREGATE_DURATION_P99), DELTA);
+  }
+
+  @Test
+  void capPercentilesWithMostDuration() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    aggregate.record(0.3, false);
+
+    assertEquals(0.3, aggregate.getPercentile(0.5), DELTA);
+    assertEquals(0.3, aggregate.getPercentile(0.99), DELTA);
+  }
+
+  @Test
+  void estimatePercentilesBeyondLastBound() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    record(aggregate, 10, 1000);
+
+    assertEquals(1000, aggregate.getPercentile(0.5), DELTA);
+  }
+
+  @Test
+  void summarizeNoExecution() {
+    Attributes attributes = new ExecutionAggregate(0).getAttributes();
+
+    assertEquals(0L, attributes.get(HopAttributes.AGGREGATE_COUNT));
+    assertEquals(0L, attributes.get(HopAttributes.AGGREGATE_ERRORS));
+    assertNull(attributes.get(HopAttributes.AGGREGATE_DURATION_MIN));
+    assertNull(attributes.get(HopAttributes.AGGREGATE_DURATION_COUNTS));
+  }
+
+  @Test
+  void startSummarySpanOnce() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    AtomicInteger started = new AtomicInteger();
+
+    Span span =
+        aggregate.getSpan(
+            () -> {
+              started.incrementAndGet();
+              return Span.getInvalid();
+            });
+
+    assertSame(span, aggregate.getSpan(Span::getInvalid));
+    assertEquals(1, started.get());
+  }
+
+  @Test
+  void endWithoutSummarySpan() {
+    ExecutionAggregate aggregate = new ExecutionAggregate(0);
+    aggregate.record(1, false);
+
+    // Nothing was folded, there is no summary span to end
+    aggregate.end();
+  }
+
+  private static void record(ExecutionAggregate aggregate, int executions, double duration) {
+    for (int i = 0; i < executions; i++) {
+      aggregate.record(duration, false);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+import org.apache.hop.pipeline.transform.ITransform;
+import org.apache.hop.pipeline.transform.ITransformFinishedListener;
+import org.apache.hop.pipeline.transform.ITransformStartedListener;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ExecutionEventsTest {
+
+  private static final String TRANSFORM_EXECUTION = "org.apache.hop.TransformExecution";
+
+  @Test
+  void emitTransformExecution() throws InterruptedException {
+    ITransform transform = mock(ITransform.class);
+    when(transform.getLogChannelId()).thenReturn("transform");
+    when(transform.getName()).thenReturn("Lookup");
+    when(transform.getTransformPluginId()).thenReturn("StreamLookup");
+    when(transform.getCopyNr()).thenReturn(1);
+    when(transform.getLinesRead()).thenReturn(100L);
+    when(transform.getLinesWritten()).thenReturn(40L);
+    when(transform.getLinesOutput()).thenReturn(10L);
+
+    @SuppressWarnings("unchecked")
+    IPipelineEngine<PipelineMeta> pipeline = mock(IPipelineEngine.class);
+    when(pipeline.getLogChannelId()).thenReturn("pipeline");
+    when(pipeline.getComponents()).thenReturn(List.of(transform));
+
+    BlockingQueue<RecordedEvent> events = new LinkedBlockingQueue<>();
+    try (RecordingStream stream = new RecordingStream()) {
+      stream.enable(TRANSFORM_EXECUTION);
+      stream.onEvent(TRANSFORM_EXECUTION, events::add);
+      stream.startAsync();
+
+      ExecutionEvents.observeTransforms(pipeline);
+
+      // Started and finished by the engine on the thread of the transform copy
+      ArgumentCaptor<ITransformStartedListener> started =
+          ArgumentCaptor.forClass(ITransformStartedListener.class);
+      ArgumentCaptor<ITransformFinishedListener> finished =
+          ArgumentCaptor.forClass(ITransformFinishedListener.class);
+      verify(transform).addTransformStartedListener(started.capture());
+      verify(transform).addTransformFinishedListener(finished.capture());
+      started.getValue().transformStarted(pipeline, null, transform);
+      finished.getValue().transformFinished(pipeline, null, transform);
+
+      RecordedEvent event = events.poll(10, TimeUnit.SECONDS);
+      assertNotNull(event, "No transform execution event recorded");
+      assertEquals("transform", event.getString("executionId"));
+      assertEquals("pipeline", event.getString("parentExecutionId"));
+      assertEquals("Lookup", event.getString("name"));
+      assertEquals("StreamLookup", event.getString("pluginId"));
+      assertEquals(1, event.getInt("copy"));
+      assertEquals(100, event.getLong("rowsRead"));
+      assertEquals(50, event.getLong("rowsWritten"));
+      assertEquals(ExecutionTelemetry.STATUS_OK, event.getString("status"));
+      assertNull(event.getString("traceId"));
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hop.core.variables.IVariables;
+import org.apache.hop.core.variables.Variables;
+import org.junit.jupiter.api.Test;
+
+class ExecutionSamplerTest {
+
+  private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+  private final OpenTelemetryConfig config = new OpenTelemetryConfig();
+  private final IVariables variables = new Variables();
+
+  @Test
+  void followParentDecision() {
+    config.setSamplingRatio(0);
+    ExecutionSampler sampler = new ExecutionSampler(config);
+    assertTrue(sampler.shouldSample(parent(TraceFlags.getSampled()), "Load", variables, "local"));
+
+    config.setSamplingRatio(1);
+    sampler = new ExecutionSampler(config);
+    assertFalse(sampler.shouldSample(parent(TraceFlags.getDefault()), "Load", variables, "local"));
+  }
+
+  @Test
+  void sampleRootWithDefaultRatio() {
+    config.setSamplingRatio(1);
+    assertTrue(new ExecutionSampler(config).shouldSample(Context.root(), "Load", variables, null));
+
+    config.setSamplingRatio(0);
+    assertFalse(new ExecutionSampler(config).shouldSample(Context.root(), "Load", variables, null));
+  }
+
+  @Test
+  void applyFirstMatchingRule() {
+    config.setSamplingRatio(0);
+    config.setSamplingRules(SamplingRule.parse("name:Load.*=0;project:sandbox=1"));
+    ExecutionSampler sampler = new ExecutionSampler(config);
+
+    assertFalse(sampler.shouldSample(Context.root(), "Report", variables, "local"));
+
+    variables.setVariable(ExecutionTelemetry.VARIABLE_HOP_PROJECT_NAME, "sandbox");
+    assertTrue(sampler.shouldSample(Context.root(), "Report", variables, "local"));
+    assertFalse(sampler.shouldSample(Context.root(), "Load customers", variables, "local"));
+  }
+
+  @Test
+  void propagateDecisionNotToSample() {
+    ExecutionSampler sampler = new ExecutionSampler(config);
+
+    SpanContext child =
+        sampler.createUnsampledSpan(parent(TraceFlags.getSampled())).getSpanContext();
+    assertTrue(child.isValid());
+    assertFalse(child.isSampled());
+    assertEquals(TRACE_ID, child.getTraceId());
+
+    SpanContext root = sampler.createUnsampledSpan(Context.root()).getSpanContext();
+    assertTrue(root.isValid());
+    assertFalse(root.isSampled());
+    assertNotEquals(TRACE_ID, root.getTraceId());
+  }
+
+  @Test
+  void keepErrorsAndSlowExecutions() {
+    config.setSamplingSlowThreshold(Duration.ofSeconds(10));
+    ExecutionSampler sampler = new ExecutionSampler(config);
+
+    assertEquals(ExecutionSampler.REASON_ERROR, sampler.getKeepReason(true, Duration.ofSeconds(1)));
+    assertEquals(
+        ExecutionSampler.REASON_SLOW, sampler.getKeepReason(false, Duration.ofSeconds(11)));
+    assertNull(sampler.getKeepReason(false, Duration.ofSeconds(5)));
+    assertNull(sampler.getKeepReason(false, null));
+
+    config.setSamplingKeepErrors(false);
+    config.setSamplingSlowThreshold(Duration.ZERO);
+    sampler = new ExecutionSampler(config);
+
+    assertNull(sampler.getKeepReason(true, Duration.ofSeconds(1)));
+    assertNull(sampler.getKeepReason(false, Duration.ofHours(1)));
+  }
+
+  @Test
+  void limitChildExecutions() {
+    config.setChildTraceLimit(2);
+    config.setChildSamplingRatio(0);
+    ExecutionSampler sampler = new ExecutionSampler(config);
+    ExecutionAggregate children = sampler.createChildAggregate();
+
+    assertTrue(sampler.shouldSampleChild(children));
+    assertTrue(sampler.shouldSampleChild(children));
+    assertFalse(sampler.shouldSampleChild(children));
+    assertFalse(sampler.shouldSampleChild(children));
+    assertEquals(ExecutionSampler.REASON_ERROR, sampler.getChildKeepReason(true));
+    assertNull(sampler.getChildKeepReason(false));
+  }
+
+  @Test
+  void sampleChildExecutionsBeyondLimit() {
+    config.setChildTraceLimit(1);
+    config.setChildSamplingRatio(1);
+    ExecutionSampler sampler = new ExecutionSampler(config);
+    ExecutionAggregate children = sampler.createChildAggregate();
+
+    for (int i = 0; i < 5; i++) {
+      assertTrue(sampler.shouldSampleChild(children));
+    }
+  }
+
+  @Test
+  void noChildAggregateWithoutLimit() {
+    config.setChildTraceLimit(0);
+
+    assertNull(new ExecutionSampler(config).createChildAggregate());
+  }
+
+  @Test
+  void sampleRootSpanOnTraceId() {
+    config.setSamplingRatio(0.5);
+    ExecutionSampler sampler = new ExecutionSampler(config);
+    Sampler expected = Sampler.traceIdRatioBased(0.5);
+
+    // The same decision as the trace id ratio sampler of any other service
+    IdGenerator generator = IdGenerator.random();
+    for (int i = 0; i < 100; i++) {
+      String traceId = generator.generateTraceId();
+      assertEquals(
+          decide(expected, traceId, Attributes.empty()),
+          decide(sampler, traceId, Attributes.empty()));
+    }
+  }
+
+  @Test
+  void sampleRootSpanWithRuleOfAttributes() {
+    config.setSamplingRatio(1);
+    config.setSamplingRules(
+        SamplingRule.parse("project:sandbox=0;run_configuration:remote=0;name:Load.*=0"));
+    ExecutionSampler sampler = new ExecutionSampler(config);
+
+    assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, TRACE_ID, Attributes.empty()));
+    assertEquals(
+        SamplingDecision.DROP,
+        decide(sampler, TRACE_ID, Attributes.of(HopAttributes.HOP_PROJECT, "sandbox")));
+    assertEquals(
+        SamplingDecision.DROP,
+        decide(
+            sampler, TRACE_ID, Attributes.of(HopAttributes.PIPELINE_RUN_CONFIGURATION, "remote")));
+    assertEquals(
+        SamplingDecision.DROP,
+        decide(
+            sampler, TRACE_ID, Attributes.of(HopAttributes.WORKFLOW_RUN_CONFIGURATION, "remote")));
+    assertEquals(
+        SamplingDecision.DROP,
+        sampler
+            .shouldSample(
+                Context.root(), TRACE_ID, "Load", SpanKind.INTERNAL, Attributes.empty(), List.of())
+            .getDecision());
+  }
+
+  @Test
+  void sampleRootSpanKeptAfterTheFact() {
+    config.setSamplingRatio(0);
+    ExecutionSampler sampler = new ExecutionSampler(config);
+
+    assertEquals(SamplingDecision.DROP, decide(sampler, TRACE_ID, Attributes.empty()));
+    assertEquals(
+        SamplingDecision.RECORD_AND_SAMPLE,
+        decide(
+            sampler,
+            TRACE_ID,
+            Attributes.of(HopAttributes.SAMPLING_REASON, ExecutionSampler.REASON_ERROR)));
+  }
+
+  @Test
+  void keepSameChildExecutionsBeyondLimit() {
+    config.setChildTraceLimit(2);
+    config.setChildSamplingRatio(0.25);
+    ExecutionSampler sampler = new ExecutionSampler(config);
+    ExecutionAggregate children = sampler.createChildAggregate();
+
+    // The first two, then one out of every four
+    List<Boolean> decisions = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      decisions.add(sampler.shouldSampleChild(children));
+    }
+    assertEquals(
+        List.of(true, true, false, false, false, true, false, false, false, true), decisions);
+  }
+
+  private static SamplingDecision decide(Sampler sampler, String traceId, Attributes attributes) {
+    return sampler
+        .shouldSample(Context.root(), traceId, "Report", SpanKind.INTERNAL, attributes, List.of())
+        .getDecision();
+  }
+
+  private static Context parent(TraceFlags flags) {
+    SpanContext spanContext =
+        SpanContext.create(TRACE_ID, "b7ad6b7169203331", flags, TraceState.getDefault());
+    return Span.wrap(spanContext).storeInContext(Context.root());
+  }
+}
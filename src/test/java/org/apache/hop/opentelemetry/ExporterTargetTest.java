@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ExporterTargetTest {
+
+  @Test
+  void parseTarget() {
+    List<ExporterTarget> targets =
+        ExporterTarget.parse(
+            "vendor|traces,metrics|http/protobuf|https://otlp.vendor.com|20|api-key=secret,x=y");
+
+    assertEquals(1, targets.size());
+    ExporterTarget target = targets.get(0);
+    assertEquals("vendor", target.getName());
+    assertEquals(Set.of("traces", "metrics"), target.getSignals());
+    assertTrue(target.hasSignal(ExporterMetrics.SIGNAL_TRACES));
+    assertFalse(target.hasSignal(ExporterMetrics.SIGNAL_LOGS));
+    assertEquals("http/protobuf", target.getProtocol());
+    assertEquals("https://otlp.vendor.com", target.getEndpoint());
+    assertEquals(Duration.ofSeconds(20), target.getTimeout());
+    assertEquals(Map.of("api-key", "secret", "x", "y"), target.getHeaders());
+  }
+
+  @Test
+  void parseEmpty() {
+    assertTrue(ExporterTarget.parse(null).isEmpty());
+    assertTrue(ExporterTarget.parse("").isEmpty());
+    assertTrue(ExporterTarget.parse(" ").isEmpty());
+  }
+
+  @Test
+  void applyDefaults() {
+    List<ExporterTarget> targets =
+        ExporterTarget.parse("|logs||http://localhost:4317;||grpc|http://localhost:4318|abc");
+
+    assertEquals(2, targets.size());
+    ExporterTarget first = targets.get(0);
+    assertEquals("target1", first.getName());
+    assertEquals("grpc", first.getProtocol());
+    assertEquals(Duration.ofSeconds(10), first.getTimeout());
+    assertTrue(first.getHeaders().isEmpty());
+
+    ExporterTarget second = targets.get(1);
+    assertEquals("target2", second.getName());
+    assertEquals(Duration.ofSeconds(10), second.getTimeout());
+  }
+
+  @Test
+  void ignoreUnknownSignals() {
+    ExporterTarget target =
+        ExporterTarget.parse("vendor| Traces ,profiles,LOGS|grpc|http://localhost:4317").get(0);
+
+    assertEquals(Set.of("traces", "logs"), target.getSignals());
+  }
+
+  @Test
+  void ignoreTargetWithoutEndpoint() {
+    List<ExporterTarget> targets =
+        ExporterTarget.parse("vendor|traces|grpc;other|traces|grpc| ;last|logs|grpc|http://host");
+
+    assertEquals(1, targets.size());
+    assertEquals("last", targets.get(0).getName());
+  }
+
+  @Test
+  void ignoreReservedAndDuplicateNames() {
+    List<ExporterTarget> targets =
+        ExporterTarget.parse(
+            "Default|traces|grpc|http://first;vendor|traces|grpc|http://second;"
+                + "vendor|logs|grpc|http://third;target2|logs|grpc|http://fourth;"
+                + "|metrics|grpc|http://fifth");
+
+    assertEquals(3, targets.size());
+    assertEquals("vendor", targets.get(0).getName());
+    assertEquals("http://second", targets.get(0).getEndpoint());
+    assertEquals("target2", targets.get(1).getName());
+    assertEquals("target3", targets.get(2).getName());
+  }
+
+  @Test
+  void ignoreInvalidHeaders() {
+    ExporterTarget target =
+        ExporterTarget.parse("vendor|traces|grpc|http://host|10|invalid, key = a=b ").get(0);
+
+    assertEquals(Map.of("key", "a=b"), target.getHeaders());
+  }
+
+  @Test
+  void formatAndParseAgain() {
+    String text =
+        "vendor|traces,metrics|http/protobuf|https://otlp.vendor.com|20|api-key=secret;"
+            + "local|logs|grpc|http://localhost:4317|10|";
+    List<ExporterTarget> targets = ExporterTarget.parse(text);
+
+    assertEquals(text, ExporterTarget.toString(targets));
+  }
+}
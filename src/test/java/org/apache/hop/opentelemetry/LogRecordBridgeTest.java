@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.logging.HopLoggingEvent;
+import org.apache.hop.core.logging.ILoggingObject;
+import org.apache.hop.core.logging.LogLevel;
+import org.apache.hop.core.logging.LogMessage;
+import org.apache.hop.core.logging.LoggingRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+class LogRecordBridgeTest {
+
+  private static final String SCOPE = "org.apache.hop.pipeline";
+  private static final AttributeKey<String> NAME = AttributeKey.stringKey("test.name");
+  private static final long TIMESTAMP = 1_700_000_000_000L;
+
+  private final SpanContext spanContext =
+      SpanContext.create(
+          "0af7651916cd43dd8448eb211c80319c",
+          "b7ad6b7169203331",
+          TraceFlags.getSampled(),
+          TraceState.getDefault());
+
+  private InMemoryLogRecordExporter exporter;
+  private OpenTelemetrySdk sdk;
+  private LoggingRegistry registry;
+  private MockedStatic<LoggingRegistry> loggingRegistry;
+  private LogRecordBridge bridge;
+
+  @BeforeEach
+  void setUp() {
+    exporter = InMemoryLogRecordExporter.create();
+    sdk =
+        OpenTelemetrySdk.builder()
+            .setLoggerProvider(
+                SdkLoggerProvider.builder()
+                    .addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter))
+                    .build())
+            .build();
+    GlobalOpenTelemetry.resetForTest();
+    GlobalOpenTelemetry.set(sdk);
+
+    registry = mock(LoggingRegistry.class);
+    loggingRegistry = mockStatic(LoggingRegistry.class);
+    loggingRegistry.when(LoggingRegistry::getInstance).thenReturn(registry);
+
+    bridge = new LogRecordBridge();
+    bridge.register(
+        "execution",
+        SCOPE,
+        Span.wrap(spanContext).storeInContext(Context.root()),
+        Attributes.of(NAME, "Load customers"));
+  }
+
+  @AfterEach
+  void tearDown() {
+    loggingRegistry.close();
+    sdk.close();
+    GlobalOpenTelemetry.resetForTest();
+  }
+
+  @Test
+  void emitRecordOfRegisteredExecution() {
+    bridge.eventAdded(event("execution", LogLevel.BASIC, false));
+
+    List<LogRecordData> records = exporter.getFinishedLogRecordItems();
+    assertEquals(1, records.size());
+    LogRecordData data = records.get(0);
+    assertEquals(SCOPE, data.getInstrumentationScopeInfo().getName());
+    assertEquals(spanContext, data.getSpanContext());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(TIMESTAMP), data.getTimestampEpochNanos());
+    assertEquals(Severity.INFO, data.getSeverity());
+    assertEquals(LogLevel.BASIC.getCode(), data.getSeverityText());
+    assertEquals("Message", data.getBody().asString());
+    assertEquals("Load customers", data.getAttributes().get(NAME));
+    assertEquals("Subject", data.getAttributes().get(HopAttributes.LOG_SUBJECT));
+  }
+
+  @Test
+  void emitRecordOfChildren() {
+    // A transform of the pipeline, itself running a child pipeline
+    parent("transform", "execution");
+    parent("child", "transform");
+
+    bridge.eventAdded(event("child", LogLevel.DETAILED, false));
+
+    List<LogRecordData> records = exporter.getFinishedLogRecordItems();
+    assertEquals(1, records.size());
+    assertEquals(spanContext, records.get(0).getSpanContext());
+  }
+
+  @Test
+  void ignoreOtherExecutions() {
+    parent("other", "root");
+
+    bridge.eventAdded(event("other", LogLevel.BASIC, false));
+    bridge.eventAdded(event("unknown", LogLevel.BASIC, false));
+
+    assertTrue(exporter.getFinishedLogRecordItems().isEmpty());
+  }
+
+  @Test
+  void stopAfterUnregister() {
+    bridge.unregister("execution");
+
+    bridge.eventAdded(event("execution", LogLevel.BASIC, false));
+
+    assertTrue(exporter.getFinishedLogRecordItems().isEmpty());
+  }
+
+  @Test
+  void ignoreEventsWithoutLogMessage() {
+    HopLoggingEvent event = mock(HopLoggingEvent.class);
+    when(event.getMessage()).thenReturn("Message");
+
+    bridge.eventAdded(event);
+
+    assertTrue(exporter.getFinishedLogRecordItems().isEmpty());
+  }
+
+  @Test
+  void mapLogLevelsToSeverities() {
+    bridge.eventAdded(event("execution", LogLevel.ERROR, false));
+    bridge.eventAdded(event("execution", LogLevel.MINIMAL, false));
+    bridge.eventAdded(event("execution", LogLevel.DETAILED, false));
+    bridge.eventAdded(event("execution", LogLevel.DEBUG, false));
+    bridge.eventAdded(event("execution", LogLevel.ROWLEVEL, false));
+    bridge.eventAdded(event("execution", LogLevel.NOTHING, false));
+
+    // An error logged at any level
+    bridge.eventAdded(event("execution", LogLevel.BASIC, true));
+
+    List<Severity> severities =
+        exporter.getFinishedLogRecordItems().stream().map(LogRecordData::getSeverity).toList();
+    assertEquals(
+        List.of(
+            Severity.ERROR,
+            Severity.INFO,
+            Severity.DEBUG,
+            Severity.DEBUG2,
+            Severity.TRACE,
+            Severity.UNDEFINED_SEVERITY_NUMBER,
+            Severity.ERROR),
+        severities);
+  }
+
+  /** Register a logging object with its parent. */
+  private void parent(String logChannelId, String parentLogChannelId) {
+    ILoggingObject parent = mock(ILoggingObject.class);
+    when(parent.getLogChannelId()).thenReturn(parentLogChannelId);
+    ILoggingObject object = mock(ILoggingObject.class);
+    when(object.getLogChannelId()).thenReturn(logChannelId);
+    when(object.getParent()).thenReturn(parent);
+    when(registry.getLoggingObject(logChannelId)).thenReturn(object);
+  }
+
+  private static HopLoggingEvent event(String logChannelId, LogLevel level, boolean error) {
+    LogMessage message = mock(LogMessage.class);
+    when(message.getLogChannelId()).thenReturn(logChannelId);
+    when(message.getLevel()).thenReturn(level);
+    when(message.isError()).thenReturn(error);
+    when(message.getMessage()).thenReturn("Message");
+    when(message.getSubject()).thenReturn("Subject");
+
+    HopLoggingEvent event = mock(HopLoggingEvent.class);
+    when(event.getMessage()).thenReturn(message);
+    when(event.getTimeStamp()).thenReturn(TIMESTAMP);
+    return event;
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.exporter.internal.marshal.Marshaler;
+import io.opentelemetry.exporter.internal.otlp.traces.TraceRequestMarshaler;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OtlpFileWriterTest {
+
+  private static final AttributeKey<String> PAYLOAD = AttributeKey.stringKey("payload");
+
+  @TempDir Path directory;
+
+  private final OpenTelemetryConfig config = new OpenTelemetryConfig();
+
+  @BeforeEach
+  void setUp() {
+    config.setFileMaxSize(0);
+    config.setFileMaxAge(Duration.ZERO);
+  }
+
+  @Test
+  void writeJsonLines() throws IOException {
+    config.setFileFormat(OtlpFileWriter.FORMAT_JSON);
+
+    try (OtlpFileWriter writer = new OtlpFileWriter(directory, "traces", config)) {
+      assertTrue(writer.write(request("first", 10)).isSuccess());
+      assertTrue(writer.write(request("second", 10)).isSuccess());
+    }
+
+    List<Path> files = listFiles();
+    assertEquals(1, files.size());
+    String name = files.get(0).getFileName().toString();
+    assertTrue(name.startsWith("traces-"));
+    assertTrue(name.endsWith("-" + ProcessHandle.current().pid() + ".jsonl"));
+    assertEquals(List.of(json("first", 10), json("second", 10)), readLines(files.get(0)));
+  }
+
+  @Test
+  void writeLengthDelimitedProtobuf() throws IOException {
+    config.setFileFormat(OtlpFileWriter.FORMAT_PROTOBUF);
+
+    // Messages longer than 127 bytes, of which the length takes several bytes
+    try (OtlpFileWriter writer = new OtlpFileWriter(directory, "metrics", config)) {
+      writer.write(request("first", 10));
+      writer.write(request("second", 1000));
+      writer.write(request("third", 100_000));
+    }
+
+    List<Path> files = listFiles();
+    assertEquals(1, files.size());
+    assertTrue(files.get(0).getFileName().toString().endsWith(".binpb"));
+    List<byte[]> messages = readDelimited(Files.readAllBytes(files.get(0)));
+    assertEquals(3, messages.size());
+    assertArrayEquals(binary("first", 10), messages.get(0));
+    assertArrayEquals(binary("second", 1000), messages.get(1));
+    assertArrayEquals(binary("third", 100_000), messages.get(2));
+  }
+
+  @Test
+  void compressWithGzip() throws IOException {
+    config.setFileFormat(OtlpFileWriter.FORMAT_JSON);
+    config.setFileCompression(true);
+
+    try (OtlpFileWriter writer = new OtlpFileWriter(directory, "logs", config)) {
+      writer.write(request("first", 10));
+      writer.flush();
+      writer.write(request("second", 10));
+    }
+
+    List<Path> files = listFiles();
+    assertEquals(1, files.size());
+    assertTrue(files.get(0).getFileName().toString().endsWith(".jsonl.gz"));
+    assertEquals(List.of(json("first", 10), json("second", 10)), readLines(files.get(0)));
+  }
+
+  @Test
+  void rotateBySize() throws IOException, InterruptedException {
+    config.setFileFormat(OtlpFileWriter.FORMAT_PROTOBUF);
+    config.setFileMaxSize(1);
+
+    // Four requests of a quarter of megabyte fill a file
+    try (OtlpFileWriter writer = new OtlpFileWriter(directory, "traces", config)) {
+      for (int i = 0; i < 6; i++) {
+        writer.write(request("span" + i, 256 * 1024));
+        Thread.sleep(2);
+      }
+    }
+
+    List<Path> files = listFiles();
+    assertEquals(2, files.size());
+    assertEquals(4, readDelimited(Files.readAllBytes(files.get(0))).size());
+    assertEquals(2, readDelimited(Files.readAllBytes(files.get(1))).size());
+  }
+
+  @Test
+  void rotateByAge() throws IOException, InterruptedException {
+    config.setFileFormat(OtlpFileWriter.FORMAT_JSON);
+    config.setFileMaxAge(Duration.ofMillis(500));
+
+    try (OtlpFileWriter writer = new OtlpFileWriter(directory, "traces", config)) {
+      writer.write(request("first", 10));
+      writer.write(request("second", 10));
+      Thread.sleep(600);
+      writer.write(request("third", 10));
+    }
+
+    List<Path> files = listFiles();
+    assertEquals(2, files.size());
+    assertEquals(List.of(json("first", 10), json("second", 10)), readLines(files.get(0)));
+    assertEquals(List.of(json("third", 10)), readLines(files.get(1)));
+  }
+
+  /** An export request of a single span, with a payload attribute of the given length. */
+  private static Marshaler request(String name, int length) {
+    return TraceRequestMarshaler.create(
+        List.of(
+            TestSpanData.builder()
+                .setName(name)
+                .setKind(SpanKind.INTERNAL)
+                .setStartEpochNanos(1_000_000)
+                .setEndEpochNanos(2_000_000)
+                .setStatus(StatusData.ok())
+                .setHasEnded(true)
+                .setAttributes(Attributes.of(PAYLOAD, "x".repeat(length)))
+                .setTotalAttributeCount(1)
+                .build()));
+  }
+
+  private static String json(String name, int length) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    request(name, length).writeJsonTo(out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] binary(String name, int length) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    request(name, length).writeBinaryTo(out);
+    return out.toByteArray();
+  }
+
+  /** Split messages each prefixed with their length as a varint. */
+  private static List<byte[]> readDelimited(byte[] content) {
+    List<byte[]> messages = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+    while (buffer.hasRemaining()) {
+      int length = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buffer.get();
+        length |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          break;
+        }
+      }
+      byte[] message = new byte[length];
+      buffer.get(message);
+      messages.add(message);
+    }
+    return messages;
+  }
+
+  private static List<String> readLines(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      InputStream content = file.toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+      return new String(content.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+    }
+  }
+
+  private List<Path> listFiles() throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.sorted().toList();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SamplingRuleTest {
+
+  @Test
+  void parseRules() {
+    List<SamplingRule> rules =
+        SamplingRule.parse("name:Load.*=0.1; project:sandbox=0;RUN_CONFIGURATION:remote=1");
+
+    assertEquals(3, rules.size());
+    assertEquals(SamplingRule.Key.NAME, rules.get(0).getKey());
+    assertEquals("Load.*", rules.get(0).getRegex());
+    assertEquals(0.1, rules.get(0).getRatio(), 0);
+    assertEquals(SamplingRule.Key.PROJECT, rules.get(1).getKey());
+    assertEquals("sandbox", rules.get(1).getRegex());
+    assertEquals(0, rules.get(1).getRatio(), 0);
+    assertEquals(SamplingRule.Key.RUN_CONFIGURATION, rules.get(2).getKey());
+    assertEquals(1, rules.get(2).getRatio(), 0);
+  }
+
+  @Test
+  void parseEmpty() {
+    assertTrue(SamplingRule.parse(null).isEmpty());
+    assertTrue(SamplingRule.parse("").isEmpty());
+    assertTrue(SamplingRule.parse("  ").isEmpty());
+  }
+
+  @Test
+  void parseRegexWithColonAndEqual() {
+    // The key ends at the first colon and the ratio starts after the last equal sign
+    List<SamplingRule> rules = SamplingRule.parse("name:a:b=c=0.5");
+
+    assertEquals(1, rules.size());
+    assertEquals("a:b=c", rules.get(0).getRegex());
+    assertEquals(0.5, rules.get(0).getRatio(), 0);
+  }
+
+  @Test
+  void ignoreInvalidRules() {
+    List<SamplingRule> rules =
+        SamplingRule.parse(
+            "name=0.1;:Load=0.1;unknown:Load=0.1;name:Load=abc;name:Load=-1;name:[=0.1;"
+                + "name:Load=1.5;name:Load=NaN;name:Load;project:prod=0.5");
+
+    assertEquals(1, rules.size());
+    assertEquals(SamplingRule.Key.PROJECT, rules.get(0).getKey());
+    assertEquals("prod", rules.get(0).getRegex());
+  }
+
+  @Test
+  void rejectRatioOutOfRange() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new SamplingRule(SamplingRule.Key.NAME, "Load", 2));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SamplingRule(SamplingRule.Key.NAME, "Load", Double.NaN));
+  }
+
+  @Test
+  void formatAndParseAgain() {
+    String text = "name:Load.*=0.1;project:sandbox=0.0";
+    List<SamplingRule> rules = SamplingRule.parse(text);
+
+    assertEquals(text, SamplingRule.toString(rules));
+    assertEquals(text, SamplingRule.toString(SamplingRule.parse(SamplingRule.toString(rules))));
+  }
+
+  @Test
+  void matchWholeValueOfKey() {
+    SamplingRule rule = SamplingRule.parse("name:Load.*=0.1").get(0);
+
+    assertTrue(rule.matches("Load customers", "project", "local"));
+    assertFalse(rule.matches("Reload customers", "project", "local"));
+    assertFalse(rule.matches(null, "project", "local"));
+
+    SamplingRule project = SamplingRule.parse("project:sandbox=0").get(0);
+    assertTrue(project.matches("Load", "sandbox", "local"));
+    assertFalse(project.matches("Load", "production", "local"));
+    assertFalse(project.matches("sandbox", null, "local"));
+
+    SamplingRule runConfiguration = SamplingRule.parse("run_configuration:remote.*=1").get(0);
+    assertTrue(runConfiguration.matches("Load", "sandbox", "remote-server"));
+    assertFalse(runConfiguration.matches("Load", "sandbox", "local"));
+  }
+}
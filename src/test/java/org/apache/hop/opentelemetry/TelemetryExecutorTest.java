@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TelemetryExecutorTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final TelemetryExecutor executor = new TelemetryExecutor(2);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    executor.shutdown(TIMEOUT);
+  }
+
+  @Test
+  void dropBeyondCapacity() {
+    AtomicInteger recorded = new AtomicInteger();
+    assertTrue(executor.execute(() -> block(recorded)));
+    assertTrue(executor.execute(() -> block(recorded)));
+
+    // Neither run nor queued, the execution thread is not slowed down
+    assertFalse(executor.execute(recorded::incrementAndGet));
+    assertEquals(1, executor.getDroppedCount());
+
+    release.countDown();
+    assertTrue(executor.awaitIdle(TIMEOUT));
+    assertEquals(2, recorded.get());
+
+    // Accepted again once the tasks are done
+    assertTrue(executor.execute(recorded::incrementAndGet));
+    assertTrue(executor.awaitIdle(TIMEOUT));
+    assertEquals(3, recorded.get());
+  }
+
+  @Test
+  void awaitIdleTimesOut() {
+    executor.execute(() -> block(new AtomicInteger()));
+
+    assertFalse(executor.awaitIdle(Duration.ofMillis(50)));
+
+    release.countDown();
+    assertTrue(executor.awaitIdle(TIMEOUT));
+  }
+
+  @Test
+  void idleWithoutTasks() {
+    assertTrue(executor.awaitIdle(Duration.ZERO));
+  }
+
+  private void block(AtomicInteger recorded) {
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    recorded.incrementAndGet();
+  }
+}
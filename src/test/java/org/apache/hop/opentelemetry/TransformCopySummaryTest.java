@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.junit.jupiter.api.Test;
+
+class TransformCopySummaryTest {
+
+  private final List<IEngineComponent> components = new ArrayList<>();
+
+  @Test
+  void summarizeCopies() {
+    addCopy("Lookup", 0, 100, 10);
+    addCopy("Lookup", 1, 100, 30);
+    addCopy("Lookup", 2, 400, 20);
+    addCopy("Output", 0, 600, 40);
+
+    List<TransformCopySummary.Copies> transforms = summarize().getTransforms();
+
+    // A single copy is not summarized
+    assertEquals(1, transforms.size());
+    TransformCopySummary.Copies copies = transforms.get(0);
+    assertEquals("Lookup", copies.name());
+    assertEquals(3, copies.copies());
+    assertEquals(600, copies.sum());
+    assertEquals(100, copies.min());
+    assertEquals(400, copies.max());
+    assertEquals(2, copies.skew(), 1e-9);
+    assertEquals(1, copies.slowestCopy());
+  }
+
+  @Test
+  void countRowsOfInputAndOutput() {
+    IEngineComponent input = addCopy("Input", 0, 0, 10);
+    when(input.getLinesInput()).thenReturn(50L);
+    when(input.getLinesWritten()).thenReturn(20L);
+    IEngineComponent output = addCopy("Input", 1, 0, 10);
+    when(output.getLinesRead()).thenReturn(10L);
+    when(output.getLinesOutput()).thenReturn(30L);
+
+    TransformCopySummary.Copies copies = summarize().getTransforms().get(0);
+
+    // The greater of the rows read and written, including physical I/O
+    assertEquals(30, copies.min());
+    assertEquals(50, copies.max());
+    assertEquals(80, copies.sum());
+  }
+
+  @Test
+  void evenSkewWithoutRows() {
+    addCopy("Filter", 0, 0, 10);
+    addCopy("Filter", 1, 0, 10);
+
+    assertEquals(1, summarize().getTransforms().get(0).skew(), 0);
+  }
+
+  @Test
+  void addEventPerTransform() {
+    addCopy("Lookup", 0, 100, 10);
+    addCopy("Lookup", 1, 300, 20);
+
+    Span span = mock(Span.class);
+    summarize().addTo(span);
+
+    verify(span)
+        .addEvent(
+            "Transform copies",
+            Attributes.builder()
+                .put(HopAttributes.TRANSFORM_NAME, "Lookup")
+                .put(HopAttributes.TRANSFORM_COPIES, 2L)
+                .put(HopAttributes.TRANSFORM_ROWS_SUM, 400L)
+                .put(HopAttributes.TRANSFORM_ROWS_MIN, 100L)
+                .put(HopAttributes.TRANSFORM_ROWS_MAX, 300L)
+                .put(HopAttributes.TRANSFORM_COPY_SKEW, 1.5)
+                .put(HopAttributes.TRANSFORM_SLOWEST_COPY, 1L)
+                .build());
+  }
+
+  @Test
+  void noEventWithoutCopies() {
+    addCopy("Input", 0, 100, 10);
+
+    TransformCopySummary summary = summarize();
+    assertTrue(summary.getTransforms().isEmpty());
+
+    Span span = mock(Span.class);
+    summary.addTo(span);
+    verifyNoInteractions(span);
+  }
+
+  private TransformCopySummary summarize() {
+    return TransformCopySummary.summarize(components);
+  }
+
+  private IEngineComponent addCopy(String name, int copyNr, long rowsRead, long duration) {
+    IEngineComponent component = mock(IEngineComponent.class);
+    when(component.getName()).thenReturn(name);
+    when(component.getCopyNr()).thenReturn(copyNr);
+    when(component.getLinesRead()).thenReturn(rowsRead);
+    when(component.getExecutionDuration()).thenReturn(duration);
+    components.add(component);
+    return component;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hop.opentelemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.DoublePointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.apache.hop.core.IRowSet;
+import org.apache.hop.pipeline.PipelineMeta;
+import org.apache.hop.pipeline.engine.IEngineComponent;
+import org.apache.hop.pipeline.engine.IPipelineEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransformMetricsObserverTest {
+
+  private static final Attributes LOAD =
+      Attributes.builder()
+          .put(HopAttributes.PIPELINE_NAME, "Load")
+          .put(HopAttributes.TRANSFORM_NAME, "Output")
+          .put(HopAttributes.TRANSFORM_COPY, 0)
+          .build();
+
+  private InMemoryMetricReader reader;
+  private SdkMeterProvider meterProvider;
+  private TransformMetricsObserver observer;
+  private PipelineMeta pipelineMeta;
+
+  @BeforeEach
+  void setUp() {
+    reader = InMemoryMetricReader.create();
+    meterProvider = SdkMeterProvider.builder().registerMetricReader(reader).build();
+    observer = new TransformMetricsObserver();
+    observer.bind(meterProvider);
+
+    pipelineMeta = mock(PipelineMeta.class);
+    when(pipelineMeta.getName()).thenReturn("Load");
+  }
+
+  @AfterEach
+  void tearDown() {
+    meterProvider.close();
+  }
+
+  @Test
+  void sumConcurrentExecutions() {
+    IPipelineEngine<PipelineMeta> first = pipeline(100, 1000);
+    IPipelineEngine<PipelineMeta> second = pipeline(50, 500);
+    observer.register(first);
+    observer.register(second);
+
+    List<MetricData> metrics = collect();
+
+    assertEquals(150, getLong(metrics, "transform.rows.read").getValue());
+    assertEquals(200, getDouble(metrics, "transform.rows.rate").get().getValue(), 1e-9);
+  }
+
+  @Test
+  void keepCountersOfFinishedExecutions() {
+    IPipelineEngine<PipelineMeta> first = pipeline(100, 1000);
+    observer.register(first);
+    assertEquals(100, getLong(collect(), "transform.rows.read").getValue());
+
+    observer.unregister(first);
+    IPipelineEngine<PipelineMeta> second = pipeline(20, 1000);
+    observer.register(second);
+
+    // The counter goes on from the finished execution, the rate only covers the running one
+    List<MetricData> metrics = collect();
+    assertEquals(120, getLong(metrics, "transform.rows.read").getValue());
+    assertEquals(20, getDouble(metrics, "transform.rows.rate").get().getValue(), 1e-9);
+
+    observer.unregister(second);
+    metrics = collect();
+    assertEquals(120, getLong(metrics, "transform.rows.read").getValue());
+    assertTrue(getDouble(metrics, "transform.rows.rate").isEmpty());
+  }
+
+  @Test
+  void readComponentsCreatedAfterRegistration() {
+    List<IEngineComponent> components = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    IPipelineEngine<PipelineMeta> pipeline = mock(IPipelineEngine.class);
+    when(pipeline.getPipelineMeta()).thenReturn(pipelineMeta);
+    when(pipeline.getComponents()).thenReturn(components);
+    observer.register(pipeline);
+
+    components.add(component(10, 1000));
+
+    assertEquals(10, getLong(collect(), "transform.rows.read").getValue());
+  }
+
+  @Test
+  void sumRowSetsOfConcurrentExecutions() {
+    Attributes attributes = Attributes.of(HopAttributes.ROWSET_FROM, "Input");
+    IPipelineEngine<PipelineMeta> first = pipeline(0, 0);
+    IPipelineEngine<PipelineMeta> second = pipeline(0, 0);
+    RowSetSampler firstSampler = rowSetSampler(attributes, 10);
+    RowSetSampler secondSampler = rowSetSampler(attributes, 30);
+    observer.register(first);
+    observer.register(second);
+    observer.registerRowSets(first, firstSampler);
+    observer.registerRowSets(second, secondSampler);
+
+    List<MetricData> metrics = collect();
+    assertEquals(40, getLongGauge(metrics, "rowset.size", attributes).getValue());
+    assertEquals(0.2, getDouble(metrics, "rowset.fill").get().getValue(), 1e-9);
+
+    observer.unregister(first);
+    assertEquals(30, getLongGauge(collect(), "rowset.size", attributes).getValue());
+  }
+
+  private IPipelineEngine<PipelineMeta> pipeline(long rowsRead, long duration) {
+    IEngineComponent component = component(rowsRead, duration);
+    @SuppressWarnings("unchecked")
+    IPipelineEngine<PipelineMeta> pipeline = mock(IPipelineEngine.class);
+    when(pipeline.getPipelineMeta()).thenReturn(pipelineMeta);
+    when(pipeline.getComponents()).thenReturn(List.of(component));
+    return pipeline;
+  }
+
+  private static IEngineComponent component(long rowsRead, long duration) {
+    IEngineComponent component = mock(IEngineComponent.class);
+    when(component.getName()).thenReturn("Output");
+    when(component.getCopyNr()).thenReturn(0);
+    when(component.getLinesRead()).thenReturn(rowsRead);
+    when(component.getExecutionDuration()).thenReturn(duration);
+    return component;
+  }
+
+  private static RowSetSampler rowSetSampler(Attributes attributes, int size) {
+    IRowSet rowSet = mock(IRowSet.class);
+    when(rowSet.size()).thenReturn(size);
+    RowSetSampler.Stats stats = new RowSetSampler.Stats(rowSet, attributes);
+    RowSetSampler sampler = mock(RowSetSampler.class);
+    when(sampler.getStats()).thenReturn(List.of(stats));
+    when(sampler.getCapacity()).thenReturn(100);
+    return sampler;
+  }
+
+  private List<MetricData> collect() {
+    return new ArrayList<>(reader.collectAllMetrics());
+  }
+
+  private static LongPointData getLong(List<MetricData> metrics, String name) {
+    MetricData data =
+        metrics.stream().filter(metric -> metric.getName().equals(name)).findFirst().orElseThrow();
+    List<LongPointData> points = new ArrayList<>(data.getLongSumData().getPoints());
+    assertEquals(1, points.size());
+    assertEquals(LOAD, points.get(0).getAttributes());
+    return points.get(0);
+  }
+
+  private static LongPointData getLongGauge(
+      List<MetricData> metrics, String name, Attributes attributes) {
+    MetricData data =
+        metrics.stream().filter(metric -> metric.getName().equals(name)).findFirst().orElseThrow();
+    List<LongPointData> points = new ArrayList<>(data.getLongGaugeData().getPoints());
+    assertEquals(1, points.size());
+    assertEquals(attributes, points.get(0).getAttributes());
+    return points.get(0);
+  }
+
+  private static Optional<DoublePointData> getDouble(List<MetricData> metrics, String name) {
+    return metrics.stream()
+        .filter(metric -> metric.getName().equals(name))
+        .flatMap(metric -> metric.getDoubleGaugeData().getPoints().stream())
+        .findFirst();
+  }
+}